@@ -1,10 +1,14 @@
 import core.*;
+import core.benchmark.BenchmarkRunner;
+import core.benchmark.InferenceBenchmark;
 import core.ordering.GreedyOrderingStrategy;
 import core.ordering.MaxCardinalitySearchOrderingStrategy;
 import core.ordering.ProvidedOrderingStrategy;
 import core.query.QueryInfo;
 import core.query.QueryResult;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -34,6 +38,12 @@ public class A3main {
             evaluator.run();
             return;
         }
+        if (args.length >= 1 && args[0].equalsIgnoreCase("bench")) {
+            // optional iteration duration in milliseconds
+            long iterationMillis = args.length == 2 ? Long.parseLong(args[1]) : 1000;
+            new InferenceBenchmark(new BenchmarkRunner(3, 5, iterationMillis)).run();
+            return;
+        }
 
         Scanner sc = new Scanner(System.in);
         InputScannerUtils scannerUtils = new InputScannerUtils(sc);
@@ -96,6 +106,16 @@ public class A3main {
                 printResult(result.getProbability());
             }
             break;
+            case "export": {
+                // write the network to a binary network file for faster loading
+                try {
+                    BinaryNetworkFormat.write(network, Path.of(args[2]));
+                    System.out.println("Network " + args[1] + " written to " + args[2]);
+                } catch (IOException e) {
+                    System.out.println("Could not write network: " + e.getMessage());
+                }
+            }
+            break;
         }
         sc.close();
     }
@@ -1,8 +1,13 @@
 package core;
 
+import core.inference.JunctionTree;
 import core.ordering.BasicOrderingStrategy;
 import core.ordering.IntermediateOrderingStrategy;
+import core.ordering.MinFillOrderingStrategy;
+import core.query.QueryCache;
+import core.query.MpeResult;
 import core.query.QueryInfo;
+import core.query.QueryPlan;
 import core.query.QueryResult;
 
 import java.util.*;
@@ -19,8 +24,18 @@ import java.util.stream.Collectors;
 public class BayesianNetwork {
     // maintain insertion order
     private final Set<Node> nodes = new LinkedHashSet<>();
+    // nodes indexed by their id, and by their lower case label
+    private final List<Node> nodesById = new ArrayList<>();
+    private final Map<String, Node> labelIndex = new HashMap<>();
     private BasicOrderingStrategy ordering;
     private boolean verbose;
+    // incremented when nodes or edges are added or a cpt changes
+    private long modCount;
+    private QueryCache queryCache;
+    // ancestors of each node indexed by id, computed when first needed and dropped when nodes or edges are added
+    private volatile BitSet[] ancestorSets;
+    private boolean usePriorMarginals;
+    private volatile PriorMarginals priorMarginals;
 
     /**
      * Bayesian network constructor specifying verbosity.
@@ -63,11 +78,102 @@ public class BayesianNetwork {
      * @return new node with label
      */
     public Node addNode(String label) {
-        Node node = new Node(label);
+        Node node = new Node(label, nodesById.size(), this);
         this.nodes.add(node);
+        nodesById.add(node);
+        // labels are case insensitive, the first node added with a label keeps it
+        labelIndex.putIfAbsent(label.toLowerCase(), node);
+        modCount++;
+        ancestorSets = null;
         return node;
     }
 
+    /**
+     * Gets the version of the bayesian network, which changes whenever a node, an edge or a cpt is added.
+     *
+     * @return network version
+     */
+    public long getVersion() {
+        return modCount;
+    }
+
+    /**
+     * Records that the cpt of a node of the network changed.
+     */
+    void cptChanged() {
+        modCount++;
+    }
+
+    /**
+     * Caches the results of queries, keeping at most the specified number of results.
+     *
+     * @param maxEntries maximum number of cached results
+     */
+    public void enableQueryCache(int maxEntries) {
+        this.queryCache = new QueryCache(maxEntries);
+    }
+
+    /**
+     * Stops caching the results of queries.
+     */
+    public void disableQueryCache() {
+        this.queryCache = null;
+    }
+
+    /**
+     * Answers queries without evidence from a snapshot of the prior marginals of every random variable.
+     * The snapshot is computed with a junction tree on the first such query, and again after the network changes.
+     */
+    public void enablePriorMarginals() {
+        this.usePriorMarginals = true;
+    }
+
+    /**
+     * Stops answering queries without evidence from the prior marginals snapshot.
+     */
+    public void disablePriorMarginals() {
+        this.usePriorMarginals = false;
+        this.priorMarginals = null;
+    }
+
+    /**
+     * Gets the prior probability of every random variable being true, computing them if the network changed.
+     *
+     * @return prior marginals keyed by random variable label
+     */
+    public Map<String, Double> getPriorMarginals() {
+        return getPriorMarginalsSnapshot().byLabel;
+    }
+
+    /**
+     * Gets the prior marginals snapshot, computing it if the network changed since it was computed.
+     *
+     * @return prior marginals snapshot
+     */
+    private PriorMarginals getPriorMarginalsSnapshot() {
+        long version = getVersion();
+        PriorMarginals snapshot = priorMarginals;
+        if (snapshot == null || snapshot.version != version) {
+            Map<String, Double> byLabel = JunctionTree.compile(this).getMarginals(List.of());
+            double[] byId = new double[getNodeCount()];
+            for (Node node : nodesById) {
+                byId[node.getId()] = byLabel.get(node.getLabel());
+            }
+            snapshot = new PriorMarginals(version, byId, Collections.unmodifiableMap(byLabel));
+            priorMarginals = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Gets the query cache.
+     *
+     * @return query cache or null if caching is disabled
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
     /**
      * Sets ordering for the
      *
@@ -81,6 +187,15 @@ public class BayesianNetwork {
         }
     }
 
+    /**
+     * Compiles an immutable snapshot of the bayesian network that can be queried from multiple threads.
+     *
+     * @return compiled network
+     */
+    public CompiledNetwork compile() {
+        return new CompiledNetwork(this);
+    }
+
     /**
      * Gets a node using a label
      *
@@ -88,7 +203,26 @@ public class BayesianNetwork {
      * @return node
      */
     public Node getNode(String label) {
-        return nodes.stream().filter(x -> x.getLabel().equalsIgnoreCase(label)).findFirst().orElse(null);
+        return labelIndex.get(label.toLowerCase());
+    }
+
+    /**
+     * Gets a node using its id
+     *
+     * @param id node id
+     * @return node
+     */
+    public Node getNode(int id) {
+        return nodesById.get(id);
+    }
+
+    /**
+     * Gets the number of nodes in the bayesian network.
+     *
+     * @return number of nodes
+     */
+    public int getNodeCount() {
+        return nodesById.size();
     }
 
     /**
@@ -102,97 +236,114 @@ public class BayesianNetwork {
         // make a parent of b
         a.addChild(b);
         b.addParent(a);
+        modCount++;
+        ancestorSets = null;
     }
 
     /**
-     * Gets a copy of the factor of a set of nodes.
+     * Gets the factors of a set of nodes. The cpts are frozen, so they are shared rather than copied.
      *
-     * @param nodeLabels set of node labels.
-     * @return list of factors for each label
+     * @param nodeIds set of node ids.
+     * @return list of factors for each node in id order
      */
-    private List<Factor> getFactors(Set<String> nodeLabels) {
-        return nodeLabels.stream().map(x -> getNode(x).getCpt().copy()).collect(Collectors.toList());
+    private List<Factor> getFactors(BitSet nodeIds) {
+        List<Factor> factors = new ArrayList<>();
+        for (int id = nodeIds.nextSetBit(0); id >= 0; id = nodeIds.nextSetBit(id + 1)) {
+            factors.add(getNode(id).getCpt());
+        }
+        return factors;
     }
 
     /**
-     * Query a variable using an order. THis is done using variable elimination
+     * Query a variable using an order. THis is done using variable elimination.
+     * If the query cache is enabled, repeated queries are answered from the cache, and if prior marginals
+     * are enabled, queries without evidence are answered from the prior marginals snapshot.
      *
      * @param queryInfo query info object containing the query variable, its value and a list of evidence
      * @return query result with the probability and the order
      */
     public QueryResult query(QueryInfo queryInfo) {
-        if (queryInfo.exists(this)) {
-            // prune order first
-            // do target first
+        if (usePriorMarginals && !queryInfo.hasEvidence()) {
             Node queryNode = getNode(queryInfo.getLabel());
-            Set<String> order = ordering.getOrder(queryInfo);
+            if (queryNode != null) {
+                double probability = getPriorMarginalsSnapshot().byId[queryNode.getId()];
+                // nothing is eliminated when answering from the snapshot
+                return new QueryResult(queryInfo.getQueryValue() ? probability : 1 - probability, new String[0], 0, new LinkedHashMap<>(), 0);
+            }
+        }
+        QueryCache cache = queryCache;
+        if (cache == null) {
+            return eliminate(queryInfo, ordering.getOrder(queryInfo));
+        }
+        String key = QueryCache.createKey(queryInfo, ordering.getCacheKey());
+        long version = getVersion();
+        QueryResult result = cache.get(key, version);
+        if (result == null) {
+            result = eliminate(queryInfo, ordering.getOrder(queryInfo));
+            cache.put(key, version, result);
+        }
+        return result;
+    }
+
+    /**
+     * Query a variable using a given order using variable elimination.
+     * This does not modify the network, so it can be called from multiple threads while the network is not changed.
+     *
+     * @param queryInfo query info object containing the query variable, its value and a list of evidence
+     * @param order     elimination order
+     * @return query result with the probability and the order
+     */
+    QueryResult eliminate(QueryInfo queryInfo, Set<String> order) {
+        Node queryNode = getNode(queryInfo.getLabel());
+        if (queryNode != null) {
+            // resolve the evidence once, the rest of the query works on nodes and ids
+            List<QueryInfo> evidences = queryInfo.getEvidences();
+            Node[] evidenceNodes = evidences.stream().map(evidence -> getNode(evidence.getLabel())).toArray(Node[]::new);
+            if (isObserved(queryNode, evidenceNodes)) {
+                // slicing would drop the queried random variable from its own factor, its value is known anyway
+                return new QueryResult(getObservedProbability(queryInfo), order.toArray(String[]::new), 0, new LinkedHashMap<>(), 0);
+            }
 
-            Set<String> prunedOrder = new LinkedHashSet<>(order);
-            Set<String> labelsToKeep = labelsToKeep(order, queryInfo);
-            prunedOrder.retainAll(labelsToKeep);
+            // prune order first
+            BitSet nodesToKeep = nodesToKeep(queryNode, evidenceNodes);
+            List<Node> prunedOrder = getPrunedOrder(order, nodesToKeep);
             // lets track the number of joins
             int noOfJoins = 0;
             Map<String, String> prunedFactorTracker = new LinkedHashMap<>();
             List<Integer> complexities = new ArrayList<>();
 
-            // add evidence to prunable order because previous function does not include it
-            labelsToKeep.add(queryNode.getLabel());
+            // add query node, because previous function does not include it
+            nodesToKeep.set(queryNode.getId());
 
             // get factors for the pruned list, evidences and query node
-            List<Factor> factors = getFactors(labelsToKeep);
-            if (queryInfo.hasEvidence()) {
-                // set evidence in factor to zero for each factor that the r.v. exists in where its value is the same as the evidence value
-                for (QueryInfo evidence : queryInfo.getEvidences()) {
-                    factors.forEach(factor -> {
-                        Node evidenceNode = getNode(evidence.getLabel());
-                        if (factor.includes(evidenceNode)) {
-                            // project the negation of the query value to 0
-                            factor.projectToZero(evidenceNode, !evidence.getQueryValue());
-                        }
-                    });
-                }
+            List<Factor> factors = getFactors(nodesToKeep);
+            // slice every factor that the r.v. exists in down to the evidence value, dropping the r.v. from it
+            for (int e = 0; e < evidenceNodes.length; e++) {
+                Node evidenceNode = evidenceNodes[e];
+                boolean evidenceValue = evidences.get(e).getQueryValue();
+                factors.replaceAll(factor -> factor.reduce(evidenceNode, evidenceValue));
             }
-            for (String pruneLabel : prunedOrder) {
-
-                // find all the factors that contains the label
-                List<Factor> toSumOut = factors.stream().filter(x -> x.includes(getNode(pruneLabel))).collect(Collectors.toList());
-
-                // perform join marginalize algorithm
-                Factor f = toSumOut.get(0);
-                if (toSumOut.size() > 1) {
-                    for (int i = 1; i < toSumOut.size(); i++) {
-                        f = f.join(toSumOut.get(i));
-                        noOfJoins++;
-                    }
+            for (Node pruneNode : prunedOrder) {
+                int joins = sumOut(factors, pruneNode, complexities);
+                if (joins < 0) {
+                    // evidence random variables are no longer in any factor
+                    continue;
                 }
-                // get complexity
-                complexities.add(f.getOrderedVariables().size());
-                f = f.sumOut(getNode(pruneLabel));
-
-                factors.removeAll(toSumOut);
-                factors.add(f);
+                noOfJoins += joins;
                 String prunedFactor = factors.stream().map(Factor::getFactorLabel).collect(Collectors.joining(", "));
-                prunedFactorTracker.put(pruneLabel, prunedFactor);
+                prunedFactorTracker.put(pruneNode.getLabel(), prunedFactor);
                 if (verbose) {
-                    System.out.println("After pruning [" + pruneLabel + "]-->factors:[" + prunedFactor + "]");
+                    System.out.println("After pruning [" + pruneNode.getLabel() + "]-->factors:[" + prunedFactor + "]");
                 }
             }
 
             // join factors if factors are more than one
-            if (factors.size() > 1) {
-                Factor f = factors.get(0);
-                for (int i = 1; i < factors.size(); i++) {
-                    f = f.join(factors.get(i));
-                    noOfJoins++;
-                }
-                factors = new ArrayList<>(List.of(f));
-            }
-            Factor queryFactor = factors.get(0);
-            // normalize
-            queryFactor.normalize();
+            noOfJoins += factors.size() - 1;
+            Factor queryFactor = joinAll(factors);
+            // normalize, the factor may be a shared cpt so a normalized factor is created
+            queryFactor = queryFactor.normalized();
             // get probability based on the queried random variable and its value
-            Map<String, Boolean> queryMap = queryFactor.generateQueryMap(new boolean[]{queryInfo.getQueryValue()});
-            double probability = queryFactor.get(queryMap);
+            double probability = queryFactor.getValue(queryInfo.getQueryValue() ? 1 : 0);
             double complexity = complexities.stream().map(x->Math.pow(2,x)).reduce(0.0,Double::sum);
             return new QueryResult(probability, order.toArray(String[]::new), noOfJoins, prunedFactorTracker, complexity);
         }
@@ -201,37 +352,630 @@ public class BayesianNetwork {
 
 
     /**
-     * Remove nodes that are not ancestors of the target node or evidence nodes (if included)
-     * It does this recursively to prune order when performing evidence based query.
+     * Checks whether a node is observed.
+     *
+     * @param node          node
+     * @param evidenceNodes evidence nodes
+     * @return true if the node is one of the evidence nodes
+     */
+    private static boolean isObserved(Node node, Node[] evidenceNodes) {
+        for (Node evidenceNode : evidenceNodes) {
+            if (evidenceNode == node) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the probability of a query whose random variable is observed, which is 1 if every observation of the
+     * random variable agrees with the queried value and 0 otherwise.
+     *
+     * @param queryInfo query info object whose random variable is in its evidence
+     * @return probability of the query
+     */
+    private double getObservedProbability(QueryInfo queryInfo) {
+        Node queryNode = getNode(queryInfo.getLabel());
+        boolean agrees = queryInfo.getEvidences().stream()
+                .filter(evidence -> getNode(evidence.getLabel()) == queryNode)
+                .allMatch(evidence -> evidence.getQueryValue() == queryInfo.getQueryValue());
+        return agrees ? 1.0 : 0.0;
+    }
+
+    /**
+     * Query many variables, sharing work between queries with the same evidence.
+     * Queries are grouped by evidence. For every group, the evidence is applied once and the random variables
+     * that are not queried in the group are eliminated once, in the order of the first query of the group.
+     * The queried random variables are then eliminated by halves, so eliminations are shared between them too.
+     * Sharing never creates a product wider than the widest product of the queries performed one by one,
+     * otherwise the queries of the group are performed one by one.
+     * The order, joins, pruned factors and complexity of a result include every elimination its probability
+     * depends on, shared or not.
+     * If the query cache is enabled, every query is looked up once and the results of the others are cached.
+     * Queries on observed or unknown random variables, and queries answered from the prior marginals snapshot,
+     * are performed with {@link #query(QueryInfo)}.
+     *
+     * @param queries query info objects
+     * @return query results in the order of the queries
+     */
+    public List<QueryResult> queryAll(List<QueryInfo> queries) {
+        QueryResult[] results = new QueryResult[queries.size()];
+        QueryCache cache = queryCache;
+        long version = getVersion();
+        Map<String, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            QueryInfo queryInfo = queries.get(i);
+            Node queryNode = getNode(queryInfo.getLabel());
+            Node[] evidenceNodes = queryInfo.getEvidences().stream().map(evidence -> getNode(evidence.getLabel())).toArray(Node[]::new);
+            // queries answered from the snapshot, unknown or observed random variables do not share work
+            boolean isAnsweredDirectly = queryNode == null || isObserved(queryNode, evidenceNodes)
+                    || (usePriorMarginals && !queryInfo.hasEvidence());
+            if (isAnsweredDirectly) {
+                results[i] = query(queryInfo);
+                continue;
+            }
+            // the cache is looked up once, queries it misses are eliminated and then cached
+            results[i] = cache == null ? null : cache.get(QueryCache.createKey(queryInfo, ordering.getCacheKey()), version);
+            if (results[i] == null) {
+                groups.computeIfAbsent(queryInfo.getEvidenceKey(), key -> new ArrayList<>()).add(i);
+            }
+        }
+        for (List<Integer> group : groups.values()) {
+            if (group.size() == 1) {
+                QueryInfo queryInfo = queries.get(group.get(0));
+                results[group.get(0)] = eliminateAndCache(queryInfo, ordering.getOrder(queryInfo));
+            } else {
+                List<QueryInfo> groupQueries = group.stream().map(queries::get).collect(Collectors.toList());
+                List<QueryResult> groupResults = eliminateAll(groupQueries);
+                for (int i = 0; i < group.size(); i++) {
+                    results[group.get(i)] = groupResults.get(i);
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Query many variables with the same evidence, eliminating the random variables that are not queried once.
+     * If sharing would create a product wider than the widest product of the queries performed one by one,
+     * the queries are performed one by one. Either way the results are cached like in {@link #query(QueryInfo)}.
+     *
+     * @param queries query info objects with the same evidence, none of them observed
+     * @return query results in the order of the queries
+     */
+    private List<QueryResult> eliminateAll(List<QueryInfo> queries) {
+        List<Set<String>> orders = new ArrayList<>();
+        int maxProductSize = 0;
+        for (QueryInfo queryInfo : queries) {
+            Set<String> order = ordering.getOrder(queryInfo);
+            orders.add(order);
+            maxProductSize = Math.max(maxProductSize, plan(queryInfo, order).getInducedWidth() + 1);
+        }
+        List<QueryResult> results = eliminateAll(queries, orders.get(0), maxProductSize);
+        if (results != null) {
+            QueryCache cache = queryCache;
+            if (cache != null) {
+                long version = getVersion();
+                for (int i = 0; i < queries.size(); i++) {
+                    cache.put(QueryCache.createKey(queries.get(i), ordering.getCacheKey()), version, results.get(i));
+                }
+            }
+            return results;
+        }
+
+        results = new ArrayList<>();
+        for (int i = 0; i < queries.size(); i++) {
+            results.add(eliminateAndCache(queries.get(i), orders.get(i)));
+        }
+        return results;
+    }
+
+    /**
+     * Query a variable using a given order using variable elimination, caching the result if the cache is enabled.
+     *
+     * @param queryInfo query info object containing the query variable, its value and a list of evidence
+     * @param order     elimination order
+     * @return query result with the probability and the order
+     */
+    private QueryResult eliminateAndCache(QueryInfo queryInfo, Set<String> order) {
+        QueryResult result = eliminate(queryInfo, order);
+        QueryCache cache = queryCache;
+        if (cache != null) {
+            cache.put(QueryCache.createKey(queryInfo, ordering.getCacheKey()), getVersion(), result);
+        }
+        return result;
+    }
+
+    /**
+     * Query many variables with the same evidence, eliminating the random variables that are not queried once
+     * and the queried random variables by halves.
+     *
+     * @param queries        query info objects with the same evidence, none of them observed
+     * @param sharedOrder    elimination order of the random variables that are not queried
+     * @param maxProductSize largest number of random variables of a product
+     * @return query results in the order of the queries, or null if a wider product would be needed
+     */
+    private List<QueryResult> eliminateAll(List<QueryInfo> queries, Set<String> sharedOrder, int maxProductSize) {
+        List<QueryInfo> evidences = queries.get(0).getEvidences();
+        Node[] evidenceNodes = evidences.stream().map(evidence -> getNode(evidence.getLabel())).toArray(Node[]::new);
+        BitSet observed = new BitSet(getNodeCount());
+        for (Node evidenceNode : evidenceNodes) {
+            observed.set(evidenceNode.getId());
+        }
+        BitSet targets = new BitSet(getNodeCount());
+        queries.forEach(queryInfo -> targets.set(getNode(queryInfo.getLabel()).getId()));
+
+        // nodes that are not ancestors of a queried or observed random variable are barren
+        BitSet[] ancestors = getAncestorSets();
+        BitSet nodesToKeep = (BitSet) targets.clone();
+        nodesToKeep.or(observed);
+        for (int id = nodesToKeep.nextSetBit(0); id >= 0; id = nodesToKeep.nextSetBit(id + 1)) {
+            nodesToKeep.or(ancestors[id]);
+        }
+        List<Factor> factors = getFactors(nodesToKeep);
+        for (int e = 0; e < evidenceNodes.length; e++) {
+            Node evidenceNode = evidenceNodes[e];
+            boolean evidenceValue = evidences.get(e).getQueryValue();
+            factors.replaceAll(factor -> factor.reduce(evidenceNode, evidenceValue));
+        }
+
+        // eliminate every random variable that is not queried or observed once
+        BitSet shared = (BitSet) nodesToKeep.clone();
+        shared.andNot(targets);
+        shared.andNot(observed);
+        PartialElimination elimination = new PartialElimination(factors, maxProductSize);
+        for (Node node : getCompleteOrder(sharedOrder, shared)) {
+            if (!elimination.sumOut(node)) {
+                return null;
+            }
+        }
+
+        // the queried random variables are split in halves, each half is kept while the other is eliminated
+        Map<Node, PartialElimination> eliminations = new HashMap<>();
+        if (!eliminateTargets(elimination, getCompleteOrder(sharedOrder, targets), eliminations)) {
+            return null;
+        }
+
+        List<QueryResult> results = new ArrayList<>();
+        for (QueryInfo queryInfo : queries) {
+            PartialElimination queryElimination = eliminations.get(getNode(queryInfo.getLabel()));
+            // normalize, the factor may be a shared cpt so a normalized factor is created
+            Factor queryFactor = joinAll(queryElimination.factors).normalized();
+            double probability = queryFactor.getValue(queryInfo.getQueryValue() ? 1 : 0);
+            int noOfJoins = queryElimination.noOfJoins + queryElimination.factors.size() - 1;
+            double complexity = queryElimination.complexities.stream().map(x -> Math.pow(2, x)).reduce(0.0, Double::sum);
+            results.add(new QueryResult(probability, queryElimination.order.toArray(String[]::new), noOfJoins,
+                    new LinkedHashMap<>(queryElimination.prunedFactorTracker), complexity));
+        }
+        return results;
+    }
+
+    /**
+     * Eliminates all but one of the queried random variables for each of them. The queried random variables are
+     * split in two halves, and each half is recursed into after eliminating the other half, so every random
+     * variable is eliminated a logarithmic number of times instead of once for every other queried one.
+     *
+     * @param elimination  factors and eliminations so far, only the queried random variables are left
+     * @param targets      queried random variables left
+     * @param eliminations eliminations leaving a single queried random variable, by random variable
+     * @return false if an elimination would need a product wider than allowed
+     */
+    private boolean eliminateTargets(PartialElimination elimination, List<Node> targets, Map<Node, PartialElimination> eliminations) {
+        if (targets.size() == 1) {
+            eliminations.put(targets.get(0), elimination);
+            return true;
+        }
+        List<Node> first = targets.subList(0, targets.size() / 2);
+        List<Node> second = targets.subList(targets.size() / 2, targets.size());
+        PartialElimination withoutSecond = elimination.copy();
+        for (Node node : second) {
+            if (!withoutSecond.sumOut(node)) {
+                return false;
+            }
+        }
+        if (!eliminateTargets(withoutSecond, first, eliminations)) {
+            return false;
+        }
+        // the factors are never changed in place, so the last branch can continue from the shared factors
+        for (Node node : first) {
+            if (!elimination.sumOut(node)) {
+                return false;
+            }
+        }
+        return eliminateTargets(elimination, second, eliminations);
+    }
+
+    /**
+     * Gets the nodes of a set in the order they appear in an elimination order, followed by the nodes missing
+     * from the order in id order.
+     *
+     * @param order   elimination order
+     * @param nodeIds ids of the nodes to order
+     * @return ordered nodes
+     */
+    private List<Node> getCompleteOrder(Set<String> order, BitSet nodeIds) {
+        List<Node> nodesInOrder = getPrunedOrder(order, nodeIds);
+        BitSet missing = (BitSet) nodeIds.clone();
+        nodesInOrder.forEach(node -> missing.clear(node.getId()));
+        for (int id = missing.nextSetBit(0); id >= 0; id = missing.nextSetBit(id + 1)) {
+            nodesInOrder.add(getNode(id));
+        }
+        return nodesInOrder;
+    }
+
+    /**
+     * Sums a random variable out of the product of the factors that include it, replacing them with the result.
+     *
+     * @param factors      factors
+     * @param node         random variable to sum out
+     * @param complexities product sizes of the eliminations, the size of this elimination is added
+     * @return number of joins, or -1 if no factor includes the random variable
+     */
+    private static int sumOut(List<Factor> factors, Node node, List<Integer> complexities) {
+        // find all the factors that contains the node
+        List<Factor> toSumOut = factors.stream().filter(x -> x.includes(node)).collect(Collectors.toList());
+        if (toSumOut.isEmpty()) {
+            return -1;
+        }
+        // perform join marginalize algorithm, summing out while joining so the product is never stored
+        Factor f = Factor.sumProduct(toSumOut, node);
+        // get complexity, the size of the product includes the pruned random variable
+        complexities.add(f.getOrderedVariables().size() + 1);
+        factors.removeAll(toSumOut);
+        factors.add(f);
+        return toSumOut.size() - 1;
+    }
+
+    /**
+     * Joins factors into one.
+     *
+     * @param factors factors to join
+     * @return product of the factors
+     */
+    private static Factor joinAll(List<Factor> factors) {
+        Factor f = factors.get(0);
+        for (int i = 1; i < factors.size(); i++) {
+            f = f.join(factors.get(i));
+        }
+        return f;
+    }
+
+    /**
+     * Finds the most probable explanation, the most probable value of every random variable that is not observed.
+     *
+     * @param evidences observed random variables and their values
+     * @return most probable assignment and its joint probability with the evidence
+     */
+    public MpeResult mpe(List<QueryInfo> evidences) {
+        List<String> labels = new ArrayList<>();
+        nodesById.forEach(node -> labels.add(node.getLabel()));
+        return map(labels, evidences);
+    }
+
+    /**
+     * Finds the maximum a posteriori assignment of a set of random variables using max-product variable elimination.
+     * The other random variables are summed out first, then the chosen random variables are maxed out while
+     * recording which value gave each maximum, and the assignment is traced back in reverse elimination order.
+     * Random variables are eliminated in min-fill order.
+     *
+     * @param labels    random variables to assign, unknown and observed random variables are ignored
+     * @param evidences observed random variables and their values
+     * @return most probable assignment and its joint probability with the evidence
+     */
+    public MpeResult map(List<String> labels, List<QueryInfo> evidences) {
+        int n = getNodeCount();
+        BitSet[] ancestors = getAncestorSets();
+        Node[] evidenceNodes = evidences.stream().map(evidence -> getNode(evidence.getLabel())).toArray(Node[]::new);
+        BitSet observed = new BitSet(n);
+        for (Node evidenceNode : evidenceNodes) {
+            observed.set(evidenceNode.getId());
+        }
+        BitSet mapIds = new BitSet(n);
+        for (String label : labels) {
+            Node node = getNode(label);
+            if (node != null && !observed.get(node.getId())) {
+                mapIds.set(node.getId());
+            }
+        }
+        // nodes that are not ancestors of the assigned or observed random variables are barren
+        BitSet relevant = (BitSet) mapIds.clone();
+        relevant.or(observed);
+        for (int id = relevant.nextSetBit(0); id >= 0; id = relevant.nextSetBit(id + 1)) {
+            relevant.or(ancestors[id]);
+        }
+
+        List<Factor> factors = getFactors(relevant);
+        for (int e = 0; e < evidenceNodes.length; e++) {
+            Node evidenceNode = evidenceNodes[e];
+            boolean evidenceValue = evidences.get(e).getQueryValue();
+            factors.replaceAll(factor -> factor.reduce(evidenceNode, evidenceValue));
+        }
+
+        // sum out every random variable that is not assigned before maxing out the assigned ones
+        int[] minFillOrder = new MinFillOrderingStrategy().getEliminationOrder(new EliminationGraph(nodesById));
+        List<Node> order = new ArrayList<>();
+        for (int id : minFillOrder) {
+            if (relevant.get(id) && !observed.get(id) && !mapIds.get(id)) {
+                order.add(getNode(id));
+            }
+        }
+        int noOfSummedOut = order.size();
+        for (int id : minFillOrder) {
+            if (mapIds.get(id)) {
+                order.add(getNode(id));
+            }
+        }
+
+        Factor[] maxFactors = new Factor[order.size()];
+        BitSet[] argMaxes = new BitSet[order.size()];
+        for (int i = 0; i < order.size(); i++) {
+            Node node = order.get(i);
+            List<Factor> toEliminate = factors.stream().filter(x -> x.includes(node)).collect(Collectors.toList());
+            if (toEliminate.isEmpty()) {
+                continue;
+            }
+            Factor f;
+            if (i < noOfSummedOut) {
+                f = Factor.sumProduct(toEliminate, node);
+            } else {
+                argMaxes[i] = new BitSet();
+                f = Factor.maxProduct(toEliminate, node, argMaxes[i]);
+                maxFactors[i] = f;
+            }
+            factors.removeAll(toEliminate);
+            factors.add(f);
+        }
+        // every remaining factor is a scalar
+        double probability = 1.0;
+        for (Factor factor : factors) {
+            probability *= factor.getValue(0);
+        }
+
+        // trace back, the random variables of each maxed factor are eliminated later, so they are already assigned
+        boolean[] values = new boolean[n];
+        for (int i = order.size() - 1; i >= noOfSummedOut; i--) {
+            if (maxFactors[i] == null) {
+                continue;
+            }
+            int index = 0;
+            for (Node variable : maxFactors[i].getOrderedVariables()) {
+                if (values[variable.getId()]) {
+                    index += maxFactors[i].getStride(variable);
+                }
+            }
+            values[order.get(i).getId()] = argMaxes[i].get(index);
+        }
+        Map<String, Boolean> assignment = new LinkedHashMap<>();
+        for (int id = mapIds.nextSetBit(0); id >= 0; id = mapIds.nextSetBit(id + 1)) {
+            assignment.put(getNode(id).getLabel(), values[id]);
+        }
+        return new MpeResult(assignment, probability, order.stream().map(Node::getLabel).toArray(String[]::new));
+    }
+
+    /**
+     * Plans a query using the stored ordering strategy, without performing it.
+     *
+     * @param queryInfo query info object containing the query variable, its value and a list of evidence
+     * @return query plan, or null if the query variable is not in the network
+     */
+    public QueryPlan plan(QueryInfo queryInfo) {
+        return plan(queryInfo, ordering.getOrder(queryInfo));
+    }
+
+    /**
+     * Plans a query using an order, without performing it. The plan follows the same pruning, evidence
+     * slicing and elimination steps as variable elimination, only tracking the random variables of each factor.
+     *
+     * @param queryInfo query info object containing the query variable, its value and a list of evidence
+     * @param order     elimination order
+     * @return query plan, or null if the query variable is not in the network
+     */
+    public QueryPlan plan(QueryInfo queryInfo, Set<String> order) {
+        Node queryNode = getNode(queryInfo.getLabel());
+        if (queryNode == null) {
+            return null;
+        }
+        Node[] evidenceNodes = queryInfo.getEvidences().stream().map(evidence -> getNode(evidence.getLabel())).toArray(Node[]::new);
+        if (isObserved(queryNode, evidenceNodes)) {
+            // the query is answered from the evidence alone, like in variable elimination
+            return new QueryPlan(order.toArray(String[]::new), new ArrayList<>(), 0, 0, 0, 0);
+        }
+        BitSet nodesToKeep = nodesToKeep(queryNode, evidenceNodes);
+        List<Node> prunedOrder = getPrunedOrder(order, nodesToKeep);
+        nodesToKeep.set(queryNode.getId());
+
+        // the scope of each factor is the family of its node, without the evidence random variables
+        BitSet evidenceIds = new BitSet(getNodeCount());
+        for (Node evidenceNode : evidenceNodes) {
+            evidenceIds.set(evidenceNode.getId());
+        }
+        List<BitSet> scopes = new ArrayList<>();
+        for (int id = nodesToKeep.nextSetBit(0); id >= 0; id = nodesToKeep.nextSetBit(id + 1)) {
+            BitSet scope = new BitSet(getNodeCount());
+            scope.set(id);
+            getNode(id).getParents().forEach(parent -> scope.set(parent.getId()));
+            scope.andNot(evidenceIds);
+            scopes.add(scope);
+        }
+
+        List<QueryPlan.Step> steps = new ArrayList<>();
+        int largestProduct = 0;
+        double maxTableCells = 0;
+        double multiplyAdds = 0;
+        double complexity = 0;
+        for (Node pruneNode : prunedOrder) {
+            int id = pruneNode.getId();
+            BitSet product = new BitSet(getNodeCount());
+            int noOfFactors = 0;
+            for (Iterator<BitSet> iterator = scopes.iterator(); iterator.hasNext(); ) {
+                BitSet scope = iterator.next();
+                if (scope.get(id)) {
+                    product.or(scope);
+                    iterator.remove();
+                    noOfFactors++;
+                }
+            }
+            if (noOfFactors == 0) {
+                continue;
+            }
+            BitSet result = (BitSet) product.clone();
+            result.clear(id);
+            scopes.add(result);
+
+            double productCells = Math.pow(2, product.cardinality());
+            largestProduct = Math.max(largestProduct, product.cardinality());
+            maxTableCells = Math.max(maxTableCells, Math.pow(2, result.cardinality()));
+            // every cell of the product is multiplied by the other factors and added to the result
+            multiplyAdds += productCells * noOfFactors;
+            complexity += productCells;
+            steps.add(new QueryPlan.Step(pruneNode.getLabel(), noOfFactors, getLabels(product), getLabels(result)));
+        }
+
+        // remaining factors are joined one at a time
+        BitSet joined = scopes.get(0);
+        for (int i = 1; i < scopes.size(); i++) {
+            BitSet product = (BitSet) joined.clone();
+            product.or(scopes.get(i));
+            double productCells = Math.pow(2, product.cardinality());
+            largestProduct = Math.max(largestProduct, product.cardinality());
+            maxTableCells = Math.max(maxTableCells, productCells);
+            multiplyAdds += productCells;
+            steps.add(new QueryPlan.Step(null, 2, getLabels(product), getLabels(product)));
+            joined = product;
+        }
+        return new QueryPlan(order.toArray(String[]::new), steps, Math.max(largestProduct - 1, 0), maxTableCells, multiplyAdds, complexity);
+    }
+
+    /**
+     * Gets the labels of a set of nodes.
+     *
+     * @param nodeIds set of node ids
+     * @return labels in id order
+     */
+    private List<String> getLabels(BitSet nodeIds) {
+        List<String> labels = new ArrayList<>();
+        for (int id = nodeIds.nextSetBit(0); id >= 0; id = nodeIds.nextSetBit(id + 1)) {
+            labels.add(getNode(id).getLabel());
+        }
+        return labels;
+    }
+
+    /**
+     * Removes the random variables that do not need to be eliminated from an order.
      *
-     * @param order     set of node labels
-     * @param queryInfo query information about query value and evidence
-     * @return set of target node ancestors as labels
+     * @param order       elimination order
+     * @param nodesToKeep ids of the nodes to eliminate
+     * @return pruned order
      */
-    private Set<String> labelsToKeep(Set<String> order, QueryInfo queryInfo) {
-        Node targetNode = getNode(queryInfo.getLabel());
-        if (queryInfo.hasEvidence()) {
-            //prune order using the target and the evidences, then merge as a union
-            // do target first
-            List<Node> ancestors = Node.getAllAncestors(targetNode);
-            Set<String> nodesToKeep = ancestors.stream().map(Node::getLabel).collect(Collectors.toSet());
-            // add pruned nodes for each evidence
-            for (QueryInfo evidence : queryInfo.getEvidences()) {
-                Set<String> labelsToKeep = labelsToKeep(new LinkedHashSet<>(order), evidence);
-                nodesToKeep.addAll(labelsToKeep);
-                // include evidence label
-                nodesToKeep.add(evidence.getLabel());
+    private List<Node> getPrunedOrder(Set<String> order, BitSet nodesToKeep) {
+        List<Node> prunedOrder = new ArrayList<>();
+        for (String label : order) {
+            Node node = getNode(label);
+            if (node != null && nodesToKeep.get(node.getId())) {
+                prunedOrder.add(node);
             }
-            // just incase the target node is included in the order, (if target node is an ancestor of an evidence nose)
-            // remove it, so you dont prune it from when doing join marginalization
-            nodesToKeep.remove(targetNode.getLabel());
-            return nodesToKeep;
+        }
+        return prunedOrder;
+    }
+
+    /**
+     * Finds the nodes whose cpts are needed to answer a query, using the Bayes-ball algorithm.
+     * A ball is passed from the target node: it passes through unobserved nodes from a child to the parents and
+     * children, from a parent to the children, and bounces back from observed nodes reached from a parent.
+     * Nodes the ball leaves through their parents need their cpts, every other node is barren or d-separated
+     * from the target by the evidence. The ball only ever needs to visit ancestors of the target and evidence nodes.
+     * An observed target is d-separated from every node, so no cpt is needed.
+     *
+     * @param targetNode    target node
+     * @param evidenceNodes evidence nodes
+     * @return ids of the nodes whose cpts are needed, excluding the target node
+     */
+    private BitSet nodesToKeep(Node targetNode, Node[] evidenceNodes) {
+        int n = getNodeCount();
+        if (isObserved(targetNode, evidenceNodes)) {
+            // the ball would bounce off the target, and its own cpt would lose the target when sliced
+            return new BitSet(n);
+        }
+        BitSet[] ancestors = getAncestorSets();
+        // nodes that are not ancestors of the target or of the evidence are barren
+        BitSet relevant = (BitSet) ancestors[targetNode.getId()].clone();
+        relevant.set(targetNode.getId());
+        BitSet observed = new BitSet(n);
+        for (Node evidenceNode : evidenceNodes) {
+            relevant.or(ancestors[evidenceNode.getId()]);
+            relevant.set(evidenceNode.getId());
+            observed.set(evidenceNode.getId());
+        }
 
-        } else {
-            // remove labels that are not ancestors of the  node in question
-            List<Node> ancestors = Node.getAllAncestors(targetNode);
-            return ancestors.stream().map(Node::getLabel).collect(Collectors.toSet());
+        // top marks nodes the ball left through their parents, bottom marks nodes the ball left through their children
+        BitSet top = new BitSet(n);
+        BitSet bottom = new BitSet(n);
+        // a node id is scheduled with its sign bit set when the ball arrives from a parent
+        Deque<Integer> schedule = new ArrayDeque<>();
+        schedule.push(targetNode.getId());
+        while (!schedule.isEmpty()) {
+            int visit = schedule.pop();
+            boolean fromParent = visit < 0;
+            int id = fromParent ? ~visit : visit;
+            Node node = getNode(id);
+            boolean isObserved = observed.get(id);
+            if ((fromParent ? isObserved : !isObserved) && !top.get(id)) {
+                top.set(id);
+                for (Node parent : node.getParents()) {
+                    schedule.push(parent.getId());
+                }
+            }
+            if (!isObserved && !bottom.get(id)) {
+                bottom.set(id);
+                for (Node child : node.getChildren()) {
+                    if (relevant.get(child.getId())) {
+                        schedule.push(~child.getId());
+                    }
+                }
+            }
         }
+        // the target node is never pruned, it is the variable left after join marginalization
+        top.clear(targetNode.getId());
+        return top;
+    }
+
+    /**
+     * Gets the ancestors of every node, computing them if the network changed since they were last needed.
+     *
+     * @return ancestor ids of each node, indexed by node id
+     */
+    private BitSet[] getAncestorSets() {
+        BitSet[] ancestors = ancestorSets;
+        if (ancestors != null) {
+            return ancestors;
+        }
+        int n = getNodeCount();
+        ancestors = new BitSet[n];
+        // visit nodes in topological order so the ancestors of the parents are known first
+        int[] noOfUnvisitedParents = new int[n];
+        Deque<Node> ready = new ArrayDeque<>();
+        for (Node node : nodesById) {
+            noOfUnvisitedParents[node.getId()] = node.getParents().size();
+            if (node.getParents().isEmpty()) {
+                ready.add(node);
+            }
+        }
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            BitSet nodeAncestors = new BitSet(n);
+            for (Node parent : node.getParents()) {
+                nodeAncestors.or(ancestors[parent.getId()]);
+                nodeAncestors.set(parent.getId());
+            }
+            ancestors[node.getId()] = nodeAncestors;
+            for (Node child : node.getChildren()) {
+                if (--noOfUnvisitedParents[child.getId()] == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        ancestorSets = ancestors;
+        return ancestors;
     }
 
 
@@ -256,4 +1000,85 @@ public class BayesianNetwork {
         }
     }
 
+
+    /**
+     * Prior marginals of a version of the network.
+     */
+    private static final class PriorMarginals {
+        private final long version;
+        // probability of each random variable being true, indexed by node id
+        private final double[] byId;
+        private final Map<String, Double> byLabel;
+
+        private PriorMarginals(long version, double[] byId, Map<String, Double> byLabel) {
+            this.version = version;
+            this.byId = byId;
+            this.byLabel = byLabel;
+        }
+    }
+
+    /**
+     * Factors left after eliminating random variables, with the eliminations that produced them.
+     */
+    private final class PartialElimination {
+        private final List<Factor> factors;
+        private final int maxProductSize;
+        private final List<String> order;
+        private final List<Integer> complexities;
+        private final Map<String, String> prunedFactorTracker;
+        private int noOfJoins;
+
+        private PartialElimination(List<Factor> factors, int maxProductSize) {
+            this(factors, maxProductSize, new ArrayList<>(), new ArrayList<>(), new LinkedHashMap<>(), 0);
+        }
+
+        private PartialElimination(List<Factor> factors, int maxProductSize, List<String> order, List<Integer> complexities,
+                                   Map<String, String> prunedFactorTracker, int noOfJoins) {
+            this.factors = factors;
+            this.maxProductSize = maxProductSize;
+            this.order = order;
+            this.complexities = complexities;
+            this.prunedFactorTracker = prunedFactorTracker;
+            this.noOfJoins = noOfJoins;
+        }
+
+        /**
+         * Sums a random variable out of the factors, recording the elimination.
+         *
+         * @param node random variable to sum out
+         * @return false if the product of the factors that include the random variable would be too wide
+         */
+        private boolean sumOut(Node node) {
+            BitSet product = new BitSet(getNodeCount());
+            for (Factor factor : factors) {
+                if (factor.includes(node)) {
+                    factor.getOrderedVariables().forEach(variable -> product.set(variable.getId()));
+                }
+            }
+            if (product.cardinality() > maxProductSize) {
+                return false;
+            }
+            int joins = BayesianNetwork.sumOut(factors, node, complexities);
+            if (joins >= 0) {
+                noOfJoins += joins;
+                order.add(node.getLabel());
+                String prunedFactor = factors.stream().map(Factor::getFactorLabel).collect(Collectors.joining(", "));
+                prunedFactorTracker.put(node.getLabel(), prunedFactor);
+                if (verbose) {
+                    System.out.println("After pruning [" + node.getLabel() + "]-->factors:[" + prunedFactor + "]");
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Copies the factors and eliminations, the factors themselves are shared.
+         *
+         * @return copy
+         */
+        private PartialElimination copy() {
+            return new PartialElimination(new ArrayList<>(factors), maxProductSize, new ArrayList<>(order),
+                    new ArrayList<>(complexities), new LinkedHashMap<>(prunedFactorTracker), noOfJoins);
+        }
+    }
 }
@@ -0,0 +1,210 @@
+package core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Binary Network Format Class.
+ * This class writes and reads bayesian networks in a compact versioned binary format, which is made of
+ * <ol>
+ *     <li>a header with a magic number, the format version and the number of random variables</li>
+ *     <li>a label table with the UTF-8 label of every random variable in insertion order</li>
+ *     <li>a topology section with the indices of the parents of every random variable</li>
+ *     <li>a contiguous block of cpt probabilities, aligned to 8 bytes, in the order of the random variables</li>
+ * </ol>
+ * Files are read through a memory mapped buffer, so the probabilities are bulk copied from the page cache
+ * straight into the cpt arrays without any parsing.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class BinaryNetworkFormat {
+    public static final String FILE_EXTENSION = ".bnet";
+    // "BNET" in ascii
+    private static final int MAGIC = 0x424E4554;
+    private static final int VERSION = 1;
+    // a cpt has 2^(parents + 1) entries and must fit in an array
+    private static final int MAX_PARENTS = 29;
+
+    /**
+     * Writes a bayesian network to a binary file.
+     *
+     * @param network bayesian network
+     * @param path    path of the binary file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(BayesianNetwork network, Path path) throws IOException {
+        List<Node> nodes = new ArrayList<>(network.getNodes());
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(nodes.size());
+            // label table
+            for (Node node : nodes) {
+                byte[] label = node.getLabel().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(label.length);
+                out.write(label);
+            }
+            // topology
+            for (Node node : nodes) {
+                out.writeInt(node.getParents().size());
+                for (Node parent : node.getParents()) {
+                    out.writeInt(parent.getId());
+                }
+            }
+            // cpt block
+            while (out.size() % Double.BYTES != 0) {
+                out.writeByte(0);
+            }
+            for (Node node : nodes) {
+                Factor cpt = node.getCpt();
+                for (int i = 0; i < cpt.getTableSize(); i++) {
+                    out.writeDouble(cpt.getValue(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads a bayesian network from a binary file.
+     *
+     * @param path path of the binary file
+     * @return bayesian network
+     * @throws IOException if the file cannot be read or is not a binary network
+     */
+    public static BayesianNetwork read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return read(buffer);
+        }
+    }
+
+    /**
+     * Reads a count of items from a buffer, checking that it is not negative and that the rest of the buffer
+     * is large enough for that many items.
+     *
+     * @param buffer    buffer positioned at the count
+     * @param itemBytes smallest number of bytes of an item
+     * @param name      name of the count, used in the error message
+     * @return count
+     * @throws IOException if the buffer ends before the count or the count is out of range
+     */
+    private static int getCount(ByteBuffer buffer, int itemBytes, String name) throws IOException {
+        if (buffer.remaining() < Integer.BYTES) {
+            throw new IOException("Corrupt binary network: truncated before the " + name);
+        }
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / itemBytes) {
+            throw new IOException("Corrupt binary network: " + name + " " + count + " out of range");
+        }
+        return count;
+    }
+
+    /**
+     * Checks that the edges between random variables form a directed acyclic graph, by visiting them in
+     * topological order and checking every random variable is visited.
+     *
+     * @param nodes random variables, indexed by id
+     * @throws IOException if the edges form a cycle
+     */
+    private static void checkAcyclic(Node[] nodes) throws IOException {
+        int[] noOfUnvisitedParents = new int[nodes.length];
+        Deque<Node> ready = new ArrayDeque<>();
+        for (Node node : nodes) {
+            noOfUnvisitedParents[node.getId()] = node.getParents().size();
+            if (node.getParents().isEmpty()) {
+                ready.add(node);
+            }
+        }
+        int noOfVisited = 0;
+        while (!ready.isEmpty()) {
+            Node node = ready.poll();
+            noOfVisited++;
+            for (Node child : node.getChildren()) {
+                if (--noOfUnvisitedParents[child.getId()] == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        if (noOfVisited < nodes.length) {
+            throw new IOException("Corrupt binary network: the parents of the random variables form a cycle");
+        }
+    }
+
+    /**
+     * Reads a bayesian network from a buffer.
+     *
+     * @param buffer buffer positioned at the start of the network
+     * @return bayesian network
+     * @throws IOException if the buffer does not contain a binary network
+     */
+    private static BayesianNetwork read(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 3 * Integer.BYTES || buffer.getInt() != MAGIC) {
+            throw new IOException("Not a binary bayesian network");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported binary network version: " + version);
+        }
+        // every random variable needs at least the length of its label and its number of parents
+        int noOfNodes = getCount(buffer, 2 * Integer.BYTES, "number of random variables");
+        BayesianNetwork network = new BayesianNetwork();
+        Node[] nodes = new Node[noOfNodes];
+        for (int i = 0; i < noOfNodes; i++) {
+            byte[] label = new byte[getCount(buffer, Byte.BYTES, "label length")];
+            buffer.get(label);
+            nodes[i] = network.addNode(new String(label, StandardCharsets.UTF_8));
+        }
+        // the last random variable each random variable was read as a parent of, to find repeated parents
+        int[] parentOf = new int[noOfNodes];
+        Arrays.fill(parentOf, -1);
+        for (int i = 0; i < noOfNodes; i++) {
+            int noOfParents = getCount(buffer, Integer.BYTES, "number of parents");
+            if (noOfParents > MAX_PARENTS) {
+                throw new IOException("Corrupt binary network: " + noOfParents + " parents of " + nodes[i].getLabel());
+            }
+            for (int p = 0; p < noOfParents; p++) {
+                int parent = buffer.getInt();
+                if (parent < 0 || parent >= noOfNodes) {
+                    throw new IOException("Corrupt binary network: parent index " + parent + " out of range");
+                }
+                if (parent == i || parentOf[parent] == i) {
+                    throw new IOException("Corrupt binary network: " + nodes[parent].getLabel() + " repeated as a parent of " + nodes[i].getLabel());
+                }
+                parentOf[parent] = i;
+                network.addEdge(nodes[parent], nodes[i]);
+            }
+        }
+        checkAcyclic(nodes);
+        while (buffer.position() % Double.BYTES != 0) {
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Corrupt binary network: missing cpt block");
+            }
+            buffer.get();
+        }
+        for (Node node : nodes) {
+            double[] values = new double[1 << (node.getParents().size() + 1)];
+            if (buffer.remaining() < (long) values.length * Double.BYTES) {
+                throw new IOException("Corrupt binary network: truncated cpt of " + node.getLabel());
+            }
+            buffer.asDoubleBuffer().get(values);
+            buffer.position(buffer.position() + values.length * Double.BYTES);
+            node.addCPTValues(values);
+        }
+        return network;
+    }
+}
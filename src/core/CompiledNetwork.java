@@ -0,0 +1,101 @@
+package core;
+
+import core.ordering.BasicOrderingStrategy;
+import core.ordering.IntermediateOrderingStrategy;
+import core.query.QueryInfo;
+import core.query.QueryPlan;
+import core.query.QueryResult;
+
+import java.util.*;
+
+/**
+ * Compiled Network Class.
+ * This class is an immutable snapshot of a bayesian network. The nodes and cpts are copied when the snapshot is
+ * created and are never exposed, and the ordering strategy is provided with every query instead of being stored,
+ * so a single compiled network can be queried from multiple threads at the same time.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public final class CompiledNetwork {
+    private final BayesianNetwork network;
+    private final List<Node> nodesList;
+    private final EliminationGraph moralGraph;
+    private final Set<String> labels;
+
+    /**
+     * Constructor specifying the network to take a snapshot of.
+     *
+     * @param source bayesian network
+     */
+    CompiledNetwork(BayesianNetwork source) {
+        network = new BayesianNetwork();
+        for (Node node : source.getNodes()) {
+            network.addNode(node.getLabel());
+        }
+        for (Node node : source.getNodes()) {
+            Node copy = network.getNode(node.getLabel());
+            // add edges in the order of the parents so the cpt variables keep the same order
+            node.getParents().forEach(parent -> network.addEdge(network.getNode(parent.getLabel()), copy));
+        }
+        for (Node node : source.getNodes()) {
+            if (node.getCpt() != null) {
+                network.getNode(node.getLabel()).addCPTValues(node.getCpt().getValues());
+            }
+        }
+        nodesList = List.copyOf(network.getNodes());
+        moralGraph = new EliminationGraph(nodesList);
+        Set<String> nodeLabels = new LinkedHashSet<>();
+        nodesList.forEach(node -> nodeLabels.add(node.getLabel()));
+        labels = Collections.unmodifiableSet(nodeLabels);
+    }
+
+    /**
+     * Gets the labels of the random variables in the network.
+     *
+     * @return random variable labels in insertion order
+     */
+    public Set<String> getLabels() {
+        return labels;
+    }
+
+    /**
+     * Query a variable using variable elimination with an ordering strategy.
+     * Automatic ordering strategies are run on the snapshot with their own random generator,
+     * so the state of the strategy is never used or modified.
+     *
+     * @param queryInfo query info object containing the query variable, its value and a list of evidence
+     * @param ordering  ordering strategy
+     * @return query result with the probability and the order
+     */
+    public QueryResult query(QueryInfo queryInfo, BasicOrderingStrategy ordering) {
+        return network.eliminate(queryInfo, getOrder(queryInfo, ordering));
+    }
+
+    /**
+     * Plans a query using an ordering strategy, without performing it.
+     *
+     * @param queryInfo query info object containing the query variable, its value and a list of evidence
+     * @param ordering  ordering strategy
+     * @return query plan, or null if the query variable is not in the network
+     */
+    public QueryPlan plan(QueryInfo queryInfo, BasicOrderingStrategy ordering) {
+        return network.plan(queryInfo, getOrder(queryInfo, ordering));
+    }
+
+    /**
+     * Gets the order of a query from an ordering strategy, without using the state of the strategy.
+     *
+     * @param queryInfo query info object
+     * @param ordering  ordering strategy
+     * @return order
+     */
+    private Set<String> getOrder(QueryInfo queryInfo, BasicOrderingStrategy ordering) {
+        if (ordering instanceof IntermediateOrderingStrategy) {
+            return ((IntermediateOrderingStrategy) ordering).getOrder(queryInfo, nodesList, moralGraph,
+                    new Random(IntermediateOrderingStrategy.SEED));
+        }
+        return ordering.getOrder(queryInfo);
+    }
+}
@@ -0,0 +1,342 @@
+package core;
+
+import java.util.*;
+
+/**
+ * Elimination Graph class.
+ * This class stores the moral graph of a set of nodes as adjacency bitsets, indexed by the position of each
+ * node in the list it was created from. Vertices are eliminated in place: the live neighbours of an eliminated
+ * vertex are connected to each other with fill-in edges and the vertex is marked as eliminated,
+ * and every elimination can be undone. Eliminated vertices keep their edges so heuristics can count them.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class EliminationGraph {
+    private final String[] labels;
+    private final Map<String, Integer> labelIndex;
+    private final int words;
+    private final long[][] adjacency;
+    private final long[] eliminated;
+    // fill-in edges added by each elimination, as pairs of a vertex and the bits added to its adjacency
+    private final Deque<Elimination> eliminations = new ArrayDeque<>();
+    // incremented whenever a vertex is eliminated or an elimination is undone
+    private long modCount;
+
+    /**
+     * Constructor specifying the nodes to use to generate the moral graph.
+     *
+     * @param nodes bayesian network nodes
+     */
+    public EliminationGraph(List<Node> nodes) {
+        int size = nodes.size();
+        labels = new String[size];
+        labelIndex = new HashMap<>();
+        words = (size + 63) / 64;
+        adjacency = new long[size][words];
+        eliminated = new long[words];
+        Map<Node, Integer> indices = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            labels[i] = nodes.get(i).getLabel();
+            labelIndex.putIfAbsent(labels[i].toLowerCase(), i);
+            indices.put(nodes.get(i), i);
+        }
+        for (int i = 0; i < size; i++) {
+            // connect every node to its parents, and the parents to each other
+            List<Integer> family = new ArrayList<>();
+            for (Node parent : nodes.get(i).getParents()) {
+                Integer parentIndex = indices.get(parent);
+                if (parentIndex != null) {
+                    family.add(parentIndex);
+                }
+            }
+            family.add(i);
+            for (int a = 0; a < family.size() - 1; a++) {
+                for (int b = a + 1; b < family.size(); b++) {
+                    addEdge(family.get(a), family.get(b));
+                }
+            }
+        }
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param other elimination graph to copy
+     */
+    private EliminationGraph(EliminationGraph other) {
+        labels = other.labels;
+        labelIndex = other.labelIndex;
+        words = other.words;
+        adjacency = new long[other.adjacency.length][];
+        for (int i = 0; i < adjacency.length; i++) {
+            adjacency[i] = other.adjacency[i].clone();
+        }
+        eliminated = other.eliminated.clone();
+    }
+
+    /**
+     * Generates a copy of the graph, without its undo history.
+     *
+     * @return copy of the graph
+     */
+    public EliminationGraph copy() {
+        return new EliminationGraph(this);
+    }
+
+    /**
+     * Gets the version of the graph, which changes whenever a vertex is eliminated or an elimination is undone.
+     *
+     * @return graph version
+     */
+    public long getVersion() {
+        return modCount;
+    }
+
+    /**
+     * Gets the number of vertices in the graph.
+     *
+     * @return number of vertices
+     */
+    public int size() {
+        return labels.length;
+    }
+
+    /**
+     * Gets the label of a vertex.
+     *
+     * @param vertex vertex index
+     * @return label
+     */
+    public String getLabel(int vertex) {
+        return labels[vertex];
+    }
+
+    /**
+     * Gets the index of a vertex using its label.
+     *
+     * @param label vertex label
+     * @return vertex index, or -1 if there is no vertex with the label
+     */
+    public int indexOf(String label) {
+        Integer index = labelIndex.get(label.toLowerCase());
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Checks if a vertex has been eliminated.
+     *
+     * @param vertex vertex index
+     * @return True if the vertex has been eliminated
+     */
+    public boolean isEliminated(int vertex) {
+        return (eliminated[vertex >>> 6] & (1L << vertex)) != 0;
+    }
+
+    /**
+     * Checks if two vertices are connected.
+     *
+     * @param a vertex index
+     * @param b other vertex index
+     * @return True if the vertices are neighbours
+     */
+    public boolean isConnected(int a, int b) {
+        return (adjacency[a][b >>> 6] & (1L << b)) != 0;
+    }
+
+    /**
+     * Gets the number of neighbours of a vertex that have not been eliminated.
+     *
+     * @param vertex vertex index
+     * @return live degree of the vertex
+     */
+    public int getDegree(int vertex) {
+        int degree = 0;
+        long[] neighbours = adjacency[vertex];
+        for (int w = 0; w < words; w++) {
+            degree += Long.bitCount(neighbours[w] & ~eliminated[w]);
+        }
+        return degree;
+    }
+
+    /**
+     * Gets the number of neighbours of a vertex that have been eliminated.
+     *
+     * @param vertex vertex index
+     * @return number of eliminated neighbours
+     */
+    public int getEliminatedDegree(int vertex) {
+        return countNeighboursIn(vertex, eliminated);
+    }
+
+    /**
+     * Gets the number of neighbours of a vertex that are in a set of vertices.
+     *
+     * @param vertex   vertex index
+     * @param vertices bitset of vertices
+     * @return number of neighbours in the set
+     */
+    public int countNeighboursIn(int vertex, long[] vertices) {
+        int count = 0;
+        long[] neighbours = adjacency[vertex];
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(neighbours[w] & vertices[w]);
+        }
+        return count;
+    }
+
+    /**
+     * Gets the neighbours of a vertex that have not been eliminated.
+     *
+     * @param vertex vertex index
+     * @return indices of the live neighbours in ascending order
+     */
+    public int[] getNeighbours(int vertex) {
+        int[] neighbours = new int[getDegree(vertex)];
+        int i = 0;
+        for (int w = 0; w < words; w++) {
+            long bits = adjacency[vertex][w] & ~eliminated[w];
+            while (bits != 0) {
+                neighbours[i++] = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return neighbours;
+    }
+
+    /**
+     * Counts the fill-in edges that eliminating a vertex would add.
+     *
+     * @param vertex vertex index
+     * @return number of missing edges between the live neighbours of the vertex
+     */
+    public int getFillIn(int vertex) {
+        long[] neighbours = liveNeighbours(vertex);
+        int missing = 0;
+        for (int u : getNeighbours(vertex)) {
+            for (int w = 0; w < words; w++) {
+                missing += Long.bitCount(neighbours[w] & ~adjacency[u][w]);
+            }
+            // u is not connected to itself
+            missing--;
+        }
+        return missing / 2;
+    }
+
+    /**
+     * Eliminates a vertex, connecting all of its live neighbours to each other.
+     *
+     * @param vertex vertex index
+     */
+    public void eliminate(int vertex) {
+        long[] neighbours = liveNeighbours(vertex);
+        int[] neighbourIndices = getNeighbours(vertex);
+        long[][] added = new long[neighbourIndices.length][];
+        for (int i = 0; i < neighbourIndices.length; i++) {
+            int u = neighbourIndices[i];
+            long[] bits = new long[words];
+            for (int w = 0; w < words; w++) {
+                bits[w] = neighbours[w] & ~adjacency[u][w];
+            }
+            bits[u >>> 6] &= ~(1L << u);
+            for (int w = 0; w < words; w++) {
+                adjacency[u][w] |= bits[w];
+            }
+            added[i] = bits;
+        }
+        eliminated[vertex >>> 6] |= 1L << vertex;
+        eliminations.push(new Elimination(vertex, neighbourIndices, added));
+        modCount++;
+    }
+
+    /**
+     * Undoes the last elimination, removing its fill-in edges.
+     *
+     * @return index of the vertex that is no longer eliminated, or -1 if nothing has been eliminated
+     */
+    public int undo() {
+        Elimination elimination = eliminations.poll();
+        if (elimination == null) {
+            return -1;
+        }
+        for (int i = 0; i < elimination.neighbours.length; i++) {
+            long[] neighbourAdjacency = adjacency[elimination.neighbours[i]];
+            for (int w = 0; w < words; w++) {
+                neighbourAdjacency[w] &= ~elimination.added[i][w];
+            }
+        }
+        eliminated[elimination.vertex >>> 6] &= ~(1L << elimination.vertex);
+        modCount++;
+        return elimination.vertex;
+    }
+
+    /**
+     * Estimates the cost of eliminating vertices in an order, as the total number of entries of the factors created.
+     * Eliminating a vertex creates a factor over the vertex and its live neighbours. The graph is not modified.
+     *
+     * @param order labels in elimination order, labels that are not in the graph are skipped
+     * @return estimated cost of the order
+     */
+    public double getEliminationCost(Iterable<String> order) {
+        EliminationGraph graph = copy();
+        double cost = 0;
+        for (String label : order) {
+            int vertex = indexOf(label);
+            if (vertex >= 0 && !graph.isEliminated(vertex)) {
+                cost += Math.pow(2, graph.getDegree(vertex) + 1);
+                graph.eliminate(vertex);
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * Creates an empty bitset able to hold every vertex of the graph.
+     *
+     * @return empty bitset
+     */
+    public long[] newVertexSet() {
+        return new long[words];
+    }
+
+    /**
+     * Gets the live neighbours of a vertex as a bitset.
+     *
+     * @param vertex vertex index
+     * @return bitset of live neighbours
+     */
+    private long[] liveNeighbours(int vertex) {
+        long[] neighbours = new long[words];
+        for (int w = 0; w < words; w++) {
+            neighbours[w] = adjacency[vertex][w] & ~eliminated[w];
+        }
+        return neighbours;
+    }
+
+    /**
+     * Adds an undirected edge.
+     *
+     * @param a vertex index
+     * @param b other vertex index
+     */
+    private void addEdge(int a, int b) {
+        adjacency[a][b >>> 6] |= 1L << b;
+        adjacency[b][a >>> 6] |= 1L << a;
+    }
+
+    /**
+     * Record of an elimination used to undo it.
+     */
+    private static final class Elimination {
+        private final int vertex;
+        private final int[] neighbours;
+        private final long[][] added;
+
+        private Elimination(int vertex, int[] neighbours, long[][] added) {
+            this.vertex = vertex;
+            this.neighbours = neighbours;
+            this.added = added;
+        }
+    }
+}
@@ -148,6 +148,15 @@ public class Evaluator {
         System.out.println("Greedy Search Ordering");
         // perform join analysis for greedy search [ADVANCED FUNCTIONALITIES]
         getJoinsPerOrdering(new GreedyOrderingStrategy());
+        printSeparator();
+        System.out.println("Min Fill Ordering");
+        getJoinsPerOrdering(new MinFillOrderingStrategy());
+        printSeparator();
+        System.out.println("Weighted Min Fill Ordering");
+        getJoinsPerOrdering(new WeightedMinFillOrderingStrategy());
+        printSeparator();
+        System.out.println("Min Degree Ordering");
+        getJoinsPerOrdering(new MinDegreeOrderingStrategy());
 
     }
 
@@ -6,6 +6,8 @@ import java.util.stream.Collectors;
 /**
  * Factor Class.
  * This class stores the probability distribution table of a set of nodes.
+ * The table is stored as a flat array of probabilities, where the first random variable is the most significant
+ * bit of the index (i.e. index 5 of a three variable factor is the key "101").
  *
  * @author 210032207
  * @version 1.0.0
@@ -13,9 +15,17 @@ import java.util.stream.Collectors;
  */
 @SuppressWarnings("StringConcatenationInLoop")
 public class Factor {
-    // using a tree map to maintain ordering based on intsertion into the map
-    private final Map<String, Double> cpt = new TreeMap<>();
-    private final Set<Node> randomVariables = new LinkedHashSet<>();
+    // the largest number of binary random variables whose probability table still fits in an array
+    private static final int MAX_VARIABLES = 30;
+    // flat probability table, indexed by the binary representation of the random variable values
+    private final double[] values;
+    // maintain ordering of the random variables as an array so lookups do not depend on node hash codes
+    private final Node[] variables;
+    // index distance between two entries that only differ in the value of a random variable
+    private final int[] strides;
+    private final Set<Node> randomVariables;
+    // frozen factors are shared, so their probability table can no longer be changed
+    private boolean frozen;
 
     /**
      * Constructor specifying the node.
@@ -23,8 +33,7 @@ public class Factor {
      * @param node node
      */
     public Factor(Node node) {
-        randomVariables.addAll(node.getParents());
-        randomVariables.add(node);
+        this(withParents(node));
     }
 
     /**
@@ -33,15 +42,55 @@ public class Factor {
      * @param randomVariables set of random variable nodes to use in the factor
      */
     public Factor(Set<Node> randomVariables) {
-        this.randomVariables.addAll(randomVariables);
+        this(randomVariables.toArray(Node[]::new));
+    }
+
+    /**
+     * Constructor specifying the ordered random variables to use in the probability table.
+     *
+     * @param variables ordered random variable nodes
+     * @throws IllegalArgumentException if the probability table would have more than 2^30 entries
+     */
+    private Factor(Node[] variables) {
+        if (variables.length > MAX_VARIABLES) {
+            throw new IllegalArgumentException("Factor of " + variables.length + " random variables exceeds the maximum of " + MAX_VARIABLES);
+        }
+        this.variables = variables;
+        this.randomVariables = new LinkedHashSet<>(Arrays.asList(variables));
+        this.strides = new int[variables.length];
+        for (int i = 0; i < variables.length; i++) {
+            strides[i] = 1 << (variables.length - 1 - i);
+        }
+        this.values = new double[1 << variables.length];
+    }
+
+    /**
+     * Gets the parents of a node followed by the node itself.
+     *
+     * @param node node
+     * @return ordered random variables of the node's cpt
+     */
+    private static Node[] withParents(Node node) {
+        Node[] variables = new Node[node.getParents().size() + 1];
+        int i = 0;
+        for (Node parent : node.getParents()) {
+            variables[i++] = parent;
+        }
+        variables[i] = node;
+        return variables;
     }
 
     /**
      * Gets the probability table.
+     * The table is generated from the underlying array, keyed by the binary representation of the values.
      *
      * @return probability table
      */
     public Map<String, Double> getCpt() {
+        Map<String, Double> cpt = new TreeMap<>();
+        for (int i = 0; i < values.length; i++) {
+            cpt.put(keyOf(i), values[i]);
+        }
         return cpt;
     }
 
@@ -54,20 +103,82 @@ public class Factor {
         return randomVariables;
     }
 
+    /**
+     * Gets the number of entries in the probability table.
+     *
+     * @return table size
+     */
+    public int getTableSize() {
+        return values.length;
+    }
+
+    /**
+     * Gets the probability stored at an index of the probability table.
+     *
+     * @param index table index
+     * @return probability
+     */
+    public double getValue(int index) {
+        return values[index];
+    }
+
+    /**
+     * Sets the probability stored at an index of the probability table.
+     *
+     * @param index table index
+     * @param prob  probability
+     */
+    public void setValue(int index, double prob) {
+        checkNotFrozen();
+        values[index] = prob;
+    }
+
+    /**
+     * Gets a copy of the probability table as an array.
+     *
+     * @return probabilities in table index order
+     */
+    public double[] getValues() {
+        return values.clone();
+    }
+
+    /**
+     * Gets the position of a random variable in the factor.
+     *
+     * @param node random variable node
+     * @return position of the random variable, or -1 if it is not included
+     */
+    public int indexOf(Node node) {
+        for (int i = 0; i < variables.length; i++) {
+            if (variables[i] == node) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Gets the stride of a random variable, which is the index distance between two entries
+     * that only differ in the value of that random variable.
+     *
+     * @param node random variable node
+     * @return stride of the random variable, or 0 if it is not included
+     */
+    public int getStride(Node node) {
+        int position = indexOf(node);
+        return position < 0 ? 0 : strides[position];
+    }
+
     /**
      * Fills the probability table with probability values.
      *
      * @param values probabilities
      */
     public void addValues(double... values) {
-        int noOfVariables = getOrderedVariables().size();
-        int tableSize = (int) Math.pow(2, noOfVariables);
+        checkNotFrozen();
         // assert that table size is equal to the number of values provided
-        if (values.length == tableSize) {
-            for (int i = 0; i < tableSize; i++) {
-                String key = expandBinary(Integer.toBinaryString(i), noOfVariables);
-                cpt.put(key, values[i]);
-            }
+        if (values.length == this.values.length) {
+            System.arraycopy(values, 0, this.values, 0, values.length);
         }
     }
 
@@ -78,15 +189,11 @@ public class Factor {
      * @return truth table combinations
      */
     public List<boolean[]> truthTableCombinations() {
-        int noOfVariables = getOrderedVariables().size();
-        int tableSize = (int) Math.pow(2, noOfVariables);
         List<boolean[]> combinations = new ArrayList<>();
-        for (int i = 0; i < tableSize; i++) {
-            String key = expandBinary(Integer.toBinaryString(i), noOfVariables);
-            char[] keyCharacters = key.toCharArray();
-            boolean[] combination = new boolean[noOfVariables];
-            for (int i1 = 0; i1 < keyCharacters.length; i1++) {
-                combination[i1] = keyCharacters[i1] == '1';
+        for (int i = 0; i < values.length; i++) {
+            boolean[] combination = new boolean[variables.length];
+            for (int v = 0; v < variables.length; v++) {
+                combination[v] = (i & strides[v]) != 0;
             }
             combinations.add(combination);
         }
@@ -94,17 +201,17 @@ public class Factor {
     }
 
     /**
-     * Expand a binary string to a certain length.
+     * Gets the probability table key of an index of the probability table.
      *
-     * @param binaryString binary string to expand
-     * @param size         required size of the string
-     * @return expanded binary string
+     * @param index table index
+     * @return probability table key
      */
-    private String expandBinary(String binaryString, int size) {
-        if (size > binaryString.length()) {
-            return "0".repeat(size - binaryString.length()) + binaryString;
+    private String keyOf(int index) {
+        char[] key = new char[variables.length];
+        for (int v = 0; v < variables.length; v++) {
+            key[v] = (index & strides[v]) != 0 ? '1' : '0';
         }
-        return binaryString;
+        return new String(key);
     }
 
     /**
@@ -145,11 +252,13 @@ public class Factor {
      * @return probability of the set of provided values of the random variables occurring
      */
     public double get(Map<String, Boolean> nodeLabelValueMap) {
-        String key = "";
-        for (Node orderedVariable : getOrderedVariables()) {
-            key += (nodeLabelValueMap.get(orderedVariable.getLabel())) ? "1" : "0";
+        int index = 0;
+        for (int i = 0; i < variables.length; i++) {
+            if (nodeLabelValueMap.get(variables[i].getLabel())) {
+                index += strides[i];
+            }
         }
-        return cpt.get(key);
+        return values[index];
     }
 
     /**
@@ -158,20 +267,61 @@ public class Factor {
      * @return coopy of a factor
      */
     public Factor copy() {
-        Factor factor = new Factor(getOrderedVariables());
-        getCpt().forEach((key, prob) -> factor.assignProbability(keyToBoolean(key), prob));
+        Factor factor = new Factor(variables);
+        System.arraycopy(values, 0, factor.values, 0, values.length);
         return factor;
+    }
+
+    /**
+     * Makes the probability table read only, so the factor can be shared instead of copied.
+     * Copies of a frozen factor can be changed.
+     *
+     * @return this factor
+     */
+    public Factor freeze() {
+        frozen = true;
+        return this;
+    }
+
+    /**
+     * Checks if the probability table is read only.
+     *
+     * @return True if the factor is frozen
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Throws if the probability table is read only.
+     */
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new UnsupportedOperationException("factor is frozen, change a copy instead");
+        }
+    }
 
+    /**
+     * Generates a normalized copy of a factor, leaving this factor unchanged.
+     *
+     * @return normalized factor
+     */
+    public Factor normalized() {
+        Factor factor = copy();
+        factor.normalize();
+        return factor;
     }
 
     /**
      * Normalizes the values in the probability table.
      */
     public void normalize() {
+        checkNotFrozen();
         // we only normalize a prior distribution, where only one r.v. exists
-        if (randomVariables.size() == 1) {
-            double total = cpt.values().stream().reduce(0.0, Double::sum);
-            cpt.forEach((key, probability) -> assignProbability(keyToBoolean(key), probability / total));
+        if (variables.length == 1) {
+            double total = values[0] + values[1];
+            values[0] /= total;
+            values[1] /= total;
         }
     }
 
@@ -182,8 +332,15 @@ public class Factor {
      * @param prob   probability of the event occurring
      */
     public void assignProbability(boolean[] values, double prob) {
-        if (values.length == getOrderedVariables().size()) {
-            cpt.put(getKey(values), prob);
+        checkNotFrozen();
+        if (values.length == variables.length) {
+            int index = 0;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i]) {
+                    index += strides[i];
+                }
+            }
+            this.values[index] = prob;
         }
     }
 
@@ -194,7 +351,7 @@ public class Factor {
      * @return True if node exists in the factor
      */
     public boolean includes(Node otherNode) {
-        return getOrderedVariables().contains(otherNode);
+        return indexOf(otherNode) >= 0;
     }
 
     /**
@@ -204,46 +361,183 @@ public class Factor {
      * @return joined factor
      */
     public Factor join(Factor other) {
-        Set<Node> f1Variables = this.getOrderedVariables();
-        Set<Node> f2Variables = other.getOrderedVariables();
-
         // all nodes v4= union of variables in both factors
-        Set<Node> v4 = new LinkedHashSet<>(f1Variables);
-        v4.addAll(f2Variables);
+        Node[] v4 = union(this.variables, other.variables);
         Factor f3 = new Factor(v4);
-        // generate f3 values for every combination of the
-        for (boolean[] combination : f3.truthTableCombinations()) {
-            // map combination to a label
-            Map<String, Boolean> labelValueMap = f3.generateQueryMap(combination);
-            // get the prob for both f1 and f2 and set that as the value for f3
-            f3.assignProbability(combination, this.get(labelValueMap) * other.get(labelValueMap));
+        // strides of every f3 variable in both operands, a stride of 0 means the operand does not include it
+        int[] f1Strides = new int[v4.length];
+        int[] f2Strides = new int[v4.length];
+        for (int v = 0; v < v4.length; v++) {
+            f1Strides[v] = this.getStride(v4[v]);
+            f2Strides[v] = other.getStride(v4[v]);
+        }
+        // walk f3 in index order, moving both operand indices along like an odometer
+        boolean[] counter = new boolean[v4.length];
+        int f1Index = 0;
+        int f2Index = 0;
+        for (int i = 0; i < f3.values.length; i++) {
+            f3.values[i] = this.values[f1Index] * other.values[f2Index];
+            for (int v = v4.length - 1; v >= 0; v--) {
+                if (counter[v]) {
+                    // carry over to the next more significant variable
+                    counter[v] = false;
+                    f1Index -= f1Strides[v];
+                    f2Index -= f2Strides[v];
+                } else {
+                    counter[v] = true;
+                    f1Index += f1Strides[v];
+                    f2Index += f2Strides[v];
+                    break;
+                }
+            }
         }
         return f3;
     }
 
+    /**
+     * Generates the ordered union of two sets of random variables.
+     *
+     * @param first  first set of random variables
+     * @param second second set of random variables
+     * @return random variables of the first set followed by the random variables only in the second set
+     */
+    private static Node[] union(Node[] first, Node[] second) {
+        List<Node> union = new ArrayList<>(Arrays.asList(first));
+        for (Node node : second) {
+            if (!union.contains(node)) {
+                union.add(node);
+            }
+        }
+        return union.toArray(Node[]::new);
+    }
+
     /**
      * Removes a random variable from a factor by marginalization.
      *
      * @param randomVariableToRemove random variable node
      * @return factor excluding the random variable
+     * @throws IllegalArgumentException if the factor does not include the random variable
      */
     public Factor sumOut(Node randomVariableToRemove) {
         // make a new factor that doesnt include the label you want to remove
-        Set<Node> newVariables = new LinkedHashSet<>(this.getOrderedVariables());
-        newVariables.remove(randomVariableToRemove);
+        int position = indexOf(randomVariableToRemove);
+        if (position < 0) {
+            throw new IllegalArgumentException("Factor does not include " + randomVariableToRemove.getLabel());
+        }
+        Node[] newVariables = new Node[variables.length - 1];
+        for (int i = 0, k = 0; i < variables.length; i++) {
+            if (i != position) {
+                newVariables[k++] = variables[i];
+            }
+        }
         Factor f4 = new Factor(newVariables);
-        // sum where random variable == true and when == false
-        List<Boolean> booleanList = List.of(true, false);
-        for (boolean[] combination : f4.truthTableCombinations()) {
-            double sum = 0;
-            for (Boolean booleanValue : booleanList) {
-                Map<String, Boolean> labelValueMap = f4.generateQueryMap(combination);
-                // add left out node
-                labelValueMap.put(randomVariableToRemove.getLabel(), booleanValue);
-                // get probability and add to the sum
-                sum += get(labelValueMap);
+        // sum where random variable == true and when == false.
+        // the variables above the removed one form the high bits of the index, the ones below form the low bits
+        int stride = strides[position];
+        for (int i = 0; i < f4.values.length; i++) {
+            int high = i / stride;
+            int low = i % stride;
+            int falseIndex = high * 2 * stride + low;
+            f4.values[i] = values[falseIndex] + values[falseIndex + stride];
+        }
+        return f4;
+    }
+
+    /**
+     * Joins a list of factors and removes a random variable from the product by marginalization in one pass.
+     * The product of the factors is never materialized, each entry of the resulting factor is summed directly
+     * from the operand tables, so memory only depends on the size of the resulting factor.
+     *
+     * @param factors                factors to join
+     * @param randomVariableToRemove random variable node to sum out
+     * @return joined factor excluding the random variable
+     */
+    public static Factor sumProduct(List<Factor> factors, Node randomVariableToRemove) {
+        return eliminateFromProduct(factors, randomVariableToRemove, null);
+    }
+
+    /**
+     * Joins a list of factors and removes a random variable from the product by maximization in one pass.
+     * Each entry of the resulting factor is the larger of the two products, and the value of the random variable
+     * that gave it is recorded so the maximizing assignment can be traced back.
+     *
+     * @param factors             factors to join
+     * @param randomVariableToMax random variable node to max out
+     * @param argMax              set at every index of the resulting factor where true is the maximizing value
+     * @return joined factor excluding the random variable
+     */
+    public static Factor maxProduct(List<Factor> factors, Node randomVariableToMax, BitSet argMax) {
+        return eliminateFromProduct(factors, randomVariableToMax, argMax);
+    }
+
+    /**
+     * Joins a list of factors and removes a random variable from the product by summing, or by maximizing
+     * when back pointers are requested.
+     *
+     * @param factors                factors to join
+     * @param randomVariableToRemove random variable node to remove
+     * @param argMax                 back pointers to fill when maximizing, or null to sum
+     * @return joined factor excluding the random variable
+     */
+    private static Factor eliminateFromProduct(List<Factor> factors, Node randomVariableToRemove, BitSet argMax) {
+        // union of the variables in the same order a chain of joins would produce, without the removed variable
+        Node[] union = new Node[0];
+        for (Factor factor : factors) {
+            union = union(union, factor.variables);
+        }
+        List<Node> newVariables = new ArrayList<>(Arrays.asList(union));
+        newVariables.remove(randomVariableToRemove);
+        Factor f4 = new Factor(newVariables.toArray(Node[]::new));
+
+        int noOfFactors = factors.size();
+        int noOfVariables = f4.variables.length;
+        // strides[v][k] is the stride of the v-th result variable in the k-th factor
+        int[][] strides = new int[noOfVariables][noOfFactors];
+        int[] removedStrides = new int[noOfFactors];
+        double[][] tables = new double[noOfFactors][];
+        for (int k = 0; k < noOfFactors; k++) {
+            Factor factor = factors.get(k);
+            tables[k] = factor.values;
+            removedStrides[k] = factor.getStride(randomVariableToRemove);
+            for (int v = 0; v < noOfVariables; v++) {
+                strides[v][k] = factor.getStride(f4.variables[v]);
+            }
+        }
+
+        boolean[] counter = new boolean[noOfVariables];
+        int[] indices = new int[noOfFactors];
+        for (int i = 0; i < f4.values.length; i++) {
+            // sum the product where random variable == false and when == true
+            double falseProduct = 1.0;
+            double trueProduct = 1.0;
+            for (int k = 0; k < noOfFactors; k++) {
+                falseProduct *= tables[k][indices[k]];
+                trueProduct *= tables[k][indices[k] + removedStrides[k]];
+            }
+            if (argMax == null) {
+                f4.values[i] = falseProduct + trueProduct;
+            } else if (trueProduct > falseProduct) {
+                f4.values[i] = trueProduct;
+                argMax.set(i);
+            } else {
+                f4.values[i] = falseProduct;
+            }
+            // move every operand index along like an odometer
+            for (int v = noOfVariables - 1; v >= 0; v--) {
+                int[] variableStrides = strides[v];
+                if (counter[v]) {
+                    counter[v] = false;
+                    for (int k = 0; k < noOfFactors; k++) {
+                        indices[k] -= variableStrides[k];
+                    }
+                } else {
+                    counter[v] = true;
+                    for (int k = 0; k < noOfFactors; k++) {
+                        indices[k] += variableStrides[k];
+                    }
+                    break;
+                }
             }
-            f4.assignProbability(combination, sum);
         }
         return f4;
     }
@@ -255,14 +549,45 @@ public class Factor {
      * @param value random variable value
      */
     public void projectToZero(Node node, boolean value) {
-        for (boolean[] combination : truthTableCombinations()) {
-            Map<String, Boolean> labelValueMap = generateQueryMap(combination);
-            if (labelValueMap.get(node.getLabel()) == value) {
-                assignProbability(combination, 0.0);
+        checkNotFrozen();
+        int stride = getStride(node);
+        for (int i = 0; i < values.length; i++) {
+            // the bit of the random variable is set when its value is true
+            if (((i & stride) != 0) == value) {
+                values[i] = 0.0;
             }
         }
     }
 
+    /**
+     * Instantiates a random variable to its observed value.
+     * Only the slice of the probability table consistent with the value is kept, so the resulting factor
+     * excludes the random variable and is half the size.
+     *
+     * @param node  random variable node
+     * @param value observed random variable value
+     * @return factor excluding the random variable, or this factor if it does not include the random variable
+     */
+    public Factor reduce(Node node, boolean value) {
+        int position = indexOf(node);
+        if (position < 0) {
+            return this;
+        }
+        Node[] newVariables = new Node[variables.length - 1];
+        for (int i = 0, k = 0; i < variables.length; i++) {
+            if (i != position) {
+                newVariables[k++] = variables[i];
+            }
+        }
+        Factor reduced = new Factor(newVariables);
+        int stride = strides[position];
+        int offset = value ? stride : 0;
+        for (int i = 0; i < reduced.values.length; i++) {
+            reduced.values[i] = values[(i / stride) * 2 * stride + i % stride + offset];
+        }
+        return reduced;
+    }
+
     /**
      * Generate a mapping of random variables label to their value.
      *
@@ -271,11 +596,10 @@ public class Factor {
      */
     public Map<String, Boolean> generateQueryMap(boolean[] values) {
         Map<String, Boolean> labelValueMap = new HashMap<>();
-        Node[] orderedNodes = getOrderedVariables().toArray(Node[]::new);
         // both combinations and order nodes are the same size
         // so get a mapping of node label to value
         for (int i = 0; i < values.length; i++) {
-            labelValueMap.put(orderedNodes[i].getLabel(), values[i]);
+            labelValueMap.put(variables[i].getLabel(), values[i]);
         }
         return labelValueMap;
     }
@@ -288,8 +612,11 @@ public class Factor {
     public String getFactorLabel() {
         // separate node from its parents
         String label;
-        Node[] randomVariablesArray = randomVariables.toArray(Node[]::new);
-        if (randomVariablesArray.length == 1) {
+        Node[] randomVariablesArray = variables;
+        if (randomVariablesArray.length == 0) {
+            // constant factor left after summing out every random variable
+            label = "";
+        } else if (randomVariablesArray.length == 1) {
             label = randomVariablesArray[0].getLabel();
         } else {
             label = randomVariablesArray[randomVariablesArray.length - 1].getLabel() + "|";
@@ -307,12 +634,12 @@ public class Factor {
      */
     public void logCPTValues() {
         // get table header
-        randomVariables.forEach(x -> System.out.print(x.getLabel() + " "));
+        Arrays.stream(variables).forEach(x -> System.out.print(x.getLabel() + " "));
         System.out.print("| ");
         System.out.println(getFactorLabel());
 
         // get table values
-        cpt.forEach((key, probability) -> {
+        getCpt().forEach((key, probability) -> {
             for (char c : key.toCharArray()) {
                 System.out.print((c == '1') ? "T " : "F ");
             }
@@ -1,5 +1,10 @@
 package core;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
 /**
  * Network Generator Class.
  * This class generates all the bayesian networks required for the practical
@@ -129,9 +134,10 @@ public class NetworkGenerator {
     }
 
     /**
-     * Resolves the bayesian network based on the network type
+     * Resolves the bayesian network based on the network type.
+     * If the network type is not one of the built-in networks, it is treated as the path of a network file.
      *
-     * @param networkType network type
+     * @param networkType network type or network file path
      * @return bayesian network of the network type
      */
     public static BayesianNetwork buildNetwork(String networkType) {
@@ -149,9 +155,32 @@ public class NetworkGenerator {
             case "CNX":
                 network = createCNXNetwork();
                 break;
+            default:
+                network = loadNetwork(Path.of(networkType));
+                break;
         }
         return network;
     }
 
+    /**
+     * Loads a bayesian network from a file.
+     *
+     * @param path network file path
+     * @return bayesian network or null if the file does not exist
+     */
+    private static BayesianNetwork loadNetwork(Path path) {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try {
+            if (path.toString().endsWith(BinaryNetworkFormat.FILE_EXTENSION)) {
+                return BinaryNetworkFormat.read(path);
+            }
+            return XmlBifNetworkFormat.read(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
 
 }
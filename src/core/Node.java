@@ -14,7 +14,11 @@ public class Node {
     private final Set<Node> parents = new LinkedHashSet<>();
     private final Set<Node> children = new LinkedHashSet<>();
     private final String label;
+    // dense index of the node in its bayesian network, or -1 if it does not belong to a network
+    private final int id;
     private Factor cpt;
+    // bayesian network the node belongs to, told when the cpt changes, or null
+    private final BayesianNetwork network;
 
     /**
      * Constructor specifying the label
@@ -22,7 +26,20 @@ public class Node {
      * @param label random variable label
      */
     public Node(String label) {
+        this(label, -1, null);
+    }
+
+    /**
+     * Constructor specifying the label, the id of the node in its bayesian network and the network.
+     *
+     * @param label   random variable label
+     * @param id      dense index of the node in its bayesian network
+     * @param network bayesian network the node belongs to
+     */
+    Node(String label, int id, BayesianNetwork network) {
         this.label = label;
+        this.id = id;
+        this.network = network;
     }
 
     /**
@@ -34,6 +51,15 @@ public class Node {
         return label;
     }
 
+    /**
+     * Gets the id of the node, which is its index in the bayesian network it was added to.
+     *
+     * @return node id, or -1 if the node does not belong to a network
+     */
+    public int getId() {
+        return id;
+    }
+
     /**
      * Adds a parent node.
      *
@@ -58,9 +84,13 @@ public class Node {
      * @param vals cpt values
      */
     public void addCPTValues(double... vals) {
-        // create the factor
-        cpt = new Factor(this);
-        cpt.addValues(vals);
+        // create the factor, it is frozen so queries can share it, new values replace it with a new factor
+        Factor factor = new Factor(this);
+        factor.addValues(vals);
+        cpt = factor.freeze();
+        if (network != null) {
+            network.cptChanged();
+        }
     }
 
     /**
@@ -91,33 +121,22 @@ public class Node {
     }
 
     /**
-     * Gets all ancestors of a node
+     * Gets all ancestors of a node, each ancestor is listed once.
      *
      * @param node node to search
      * @return list of ancestors
      */
     public static List<Node> getAllAncestors(Node node) {
-        List<Node> nodesList = new ArrayList<>();
-        if (node.getParents().size() == 0) {
-            return nodesList;
-        }
-        for (Node parent : node.getParents()) {
-            nodesList.add(parent);
-            nodesList.addAll(getAllAncestors(parent));
+        // breadth first search, so shared ancestors are only visited once
+        Set<Node> ancestors = new LinkedHashSet<>(node.getParents());
+        Deque<Node> toVisit = new ArrayDeque<>(node.getParents());
+        while (!toVisit.isEmpty()) {
+            for (Node parent : toVisit.poll().getParents()) {
+                if (ancestors.add(parent)) {
+                    toVisit.add(parent);
+                }
+            }
         }
-        return nodesList;
-    }
-
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        Node node = (Node) o;
-        return label.equals(node.label) && Objects.equals(cpt, node.cpt);
-    }
-
-    @Override
-    public int hashCode() {
-        return Objects.hash(label, cpt);
+        return new ArrayList<>(ancestors);
     }
 }
@@ -0,0 +1,139 @@
+package core;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic Network Generator Class.
+ * This class generates random bayesian networks of any size, used to measure how inference and ordering scale.
+ * Random variables are created in topological order and each one draws its parents from a window of the
+ * random variables created before it. Moral graph edges never span more than the window, so the treewidth of
+ * the network is at most the window size. In a layered network a parent can be up to twice the window minus one
+ * random variables before its child, so the bound is twice the window minus one.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class SyntheticNetworkGenerator {
+    private final long seed;
+    private int noOfNodes = 10;
+    private int maxInDegree = 2;
+    private int window = 5;
+    private boolean layered = false;
+    private double sparsity = 0.0;
+
+    /**
+     * Constructor specifying the seed, so the same parameters always generate the same network.
+     *
+     * @param seed random seed
+     */
+    public SyntheticNetworkGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Sets the number of random variables.
+     *
+     * @param noOfNodes number of random variables
+     */
+    public void setNoOfNodes(int noOfNodes) {
+        this.noOfNodes = noOfNodes;
+    }
+
+    /**
+     * Sets the maximum number of parents of a random variable.
+     *
+     * @param maxInDegree maximum number of parents
+     */
+    public void setMaxInDegree(int maxInDegree) {
+        this.maxInDegree = maxInDegree;
+    }
+
+    /**
+     * Sets how many of the previously created random variables a random variable can draw its parents from.
+     *
+     * @param window parent window size
+     */
+    public void setWindow(int window) {
+        this.window = window;
+    }
+
+    /**
+     * Sets whether the network is layered. In a layered network the random variables are split into layers of
+     * the window size and parents are only drawn from the previous layer, so moral graph edges can span up to
+     * twice the window minus one random variables.
+     *
+     * @param layered True for a layered network
+     */
+    public void setLayered(boolean layered) {
+        this.layered = layered;
+    }
+
+    /**
+     * Sets the fraction of cpt rows that are deterministic, i.e. have a probability of 0 or 1.
+     *
+     * @param sparsity fraction of deterministic cpt rows
+     */
+    public void setSparsity(double sparsity) {
+        this.sparsity = sparsity;
+    }
+
+    /**
+     * Generates a bayesian network with the current parameters.
+     *
+     * @return bayesian network
+     */
+    public BayesianNetwork generate() {
+        Random random = new Random(seed);
+        BayesianNetwork network = new BayesianNetwork();
+        List<Node> nodes = new ArrayList<>();
+        for (int i = 0; i < noOfNodes; i++) {
+            Node node = network.addNode("X" + i);
+            // candidate parents are the previous layer, or the previous random variables within the window
+            int start = layered ? (i / window - 1) * window : i - window;
+            int end = layered ? (i / window) * window : i;
+            List<Node> candidates = new ArrayList<>(nodes.subList(Math.max(0, start), end));
+            int noOfParents = Math.min(candidates.size(), random.nextInt(maxInDegree + 1));
+            for (int p = 0; p < noOfParents; p++) {
+                Node parent = candidates.remove(random.nextInt(candidates.size()));
+                network.addEdge(parent, node);
+            }
+            nodes.add(node);
+        }
+        for (Node node : nodes) {
+            int noOfRows = 1 << node.getParents().size();
+            double[] values = new double[2 * noOfRows];
+            for (int row = 0; row < noOfRows; row++) {
+                double trueProbability = random.nextDouble() < sparsity
+                        ? (random.nextBoolean() ? 1.0 : 0.0)
+                        : random.nextDouble();
+                values[2 * row] = 1 - trueProbability;
+                values[2 * row + 1] = trueProbability;
+            }
+            node.addCPTValues(values);
+        }
+        return network;
+    }
+
+    /**
+     * Generates a bayesian network with the current parameters and writes it to a file.
+     * Files ending with the binary network extension are written in the binary format, any other file as XMLBIF.
+     *
+     * @param path network file path
+     * @return generated bayesian network
+     * @throws IOException if the file cannot be written
+     */
+    public BayesianNetwork generate(Path path) throws IOException {
+        BayesianNetwork network = generate();
+        if (path.toString().endsWith(BinaryNetworkFormat.FILE_EXTENSION)) {
+            BinaryNetworkFormat.write(network, path);
+        } else {
+            XmlBifNetworkFormat.write(network, path);
+        }
+        return network;
+    }
+}
@@ -0,0 +1,293 @@
+package core;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * XMLBIF Network Format Class.
+ * This class reads and writes bayesian networks stored in the XMLBIF format (such as the files in the Networks folder).
+ * The file is streamed, so no document tree is built and each probability table is parsed straight into
+ * the array used for the cpt.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class XmlBifNetworkFormat {
+    private static final String NAMESPACE = "http://www.cs.ubc.ca/labs/lci/fopi/ve/XMLBIFv0_3";
+
+    /**
+     * Reads a bayesian network from an XMLBIF file.
+     *
+     * @param path path of the XMLBIF file
+     * @return bayesian network
+     * @throws IOException if the file cannot be read or is not valid XMLBIF
+     */
+    public static BayesianNetwork read(Path path) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(path)) {
+            return read(inputStream);
+        }
+    }
+
+    /**
+     * Reads a bayesian network from an XMLBIF stream.
+     *
+     * @param inputStream XMLBIF stream
+     * @return bayesian network
+     * @throws IOException if the stream cannot be read or is not valid XMLBIF
+     */
+    public static BayesianNetwork read(InputStream inputStream) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        try {
+            XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+            try {
+                return read(reader);
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Invalid XMLBIF network: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Builds the network from the XML events.
+     *
+     * @param reader XML stream reader
+     * @return bayesian network
+     * @throws XMLStreamException if the XML is malformed
+     * @throws IOException        if the network is not valid XMLBIF
+     */
+    private static BayesianNetwork read(XMLStreamReader reader) throws XMLStreamException, IOException {
+        BayesianNetwork network = new BayesianNetwork();
+        // whether the first outcome of each variable is its true outcome
+        Map<String, Boolean> trueFirst = new HashMap<>();
+
+        String variableName = null;
+        List<String> outcomes = new ArrayList<>();
+        String forName = null;
+        List<String> givenNames = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                text.setLength(0);
+                if (reader.getLocalName().equals("VARIABLE")) {
+                    variableName = null;
+                    outcomes.clear();
+                } else if (reader.getLocalName().equals("DEFINITION")) {
+                    forName = null;
+                    givenNames.clear();
+                }
+            } else if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA) {
+                text.append(reader.getText());
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                String value = text.toString().trim();
+                switch (reader.getLocalName()) {
+                    case "NAME":
+                        variableName = value;
+                        break;
+                    case "OUTCOME":
+                        outcomes.add(value);
+                        break;
+                    case "VARIABLE":
+                        if (outcomes.size() != 2) {
+                            throw new IOException("Only binary random variables are supported: " + variableName);
+                        }
+                        network.addNode(variableName);
+                        trueFirst.put(variableName, isTrueOutcome(outcomes.get(0)));
+                        break;
+                    case "FOR":
+                        forName = value;
+                        break;
+                    case "GIVEN":
+                        givenNames.add(value);
+                        break;
+                    case "TABLE":
+                        addDefinition(network, trueFirst, forName, givenNames, value);
+                        break;
+                }
+                text.setLength(0);
+            }
+        }
+        return network;
+    }
+
+    /**
+     * Connects a random variable to its parents and fills its cpt.
+     * XMLBIF tables have the parents in the order they are given followed by the random variable,
+     * which is the same order as the cpt, but the outcomes of each variable may be listed true first.
+     *
+     * @param network    bayesian network
+     * @param trueFirst  whether the first outcome of each variable is its true outcome
+     * @param forName    random variable label
+     * @param givenNames parent labels
+     * @param table      whitespace separated probabilities
+     * @throws IOException if the definition does not match the declared variables
+     */
+    private static void addDefinition(BayesianNetwork network, Map<String, Boolean> trueFirst, String forName,
+                                      List<String> givenNames, String table) throws IOException {
+        Node node = network.getNode(forName);
+        if (node == null) {
+            throw new IOException("Definition for an undeclared variable: " + forName);
+        }
+        int noOfVariables = givenNames.size() + 1;
+        // bits that have to be flipped to turn an XMLBIF table index into a cpt index
+        int flipMask = 0;
+        for (int i = 0; i < givenNames.size(); i++) {
+            Node parent = network.getNode(givenNames.get(i));
+            if (parent == null) {
+                throw new IOException("Definition for " + forName + " uses an undeclared variable: " + givenNames.get(i));
+            }
+            network.addEdge(parent, node);
+            if (trueFirst.get(parent.getLabel())) {
+                flipMask |= 1 << (noOfVariables - 1 - i);
+            }
+        }
+        if (trueFirst.get(node.getLabel())) {
+            flipMask |= 1;
+        }
+
+        double[] values = new double[1 << noOfVariables];
+        int index = 0;
+        int position = 0;
+        int length = table.length();
+        while (position < length) {
+            while (position < length && Character.isWhitespace(table.charAt(position))) {
+                position++;
+            }
+            int start = position;
+            while (position < length && !Character.isWhitespace(table.charAt(position))) {
+                position++;
+            }
+            if (start < position) {
+                if (index >= values.length) {
+                    throw new IOException("Too many probabilities for " + forName);
+                }
+                values[index++ ^ flipMask] = Double.parseDouble(table.substring(start, position));
+            }
+        }
+        if (index != values.length) {
+            throw new IOException("Expected " + values.length + " probabilities for " + forName + " but found " + index);
+        }
+        node.addCPTValues(values);
+    }
+
+    /**
+     * Writes a bayesian network to an XMLBIF file, listing the true outcome of every random variable first.
+     *
+     * @param network bayesian network
+     * @param path    path of the XMLBIF file
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(BayesianNetwork network, Path path) throws IOException {
+        try (OutputStream outputStream = Files.newOutputStream(path)) {
+            XMLStreamWriter writer = XMLOutputFactory.newInstance().createXMLStreamWriter(outputStream, "UTF-8");
+            try {
+                write(network, writer);
+            } finally {
+                writer.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Could not write XMLBIF network: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the network as XML events.
+     *
+     * @param network bayesian network
+     * @param writer  XML stream writer
+     * @throws XMLStreamException if the XML cannot be written
+     */
+    private static void write(BayesianNetwork network, XMLStreamWriter writer) throws XMLStreamException {
+        writer.writeStartDocument("UTF-8", "1.0");
+        writer.writeCharacters("\n");
+        writer.writeStartElement("BIF");
+        writer.writeAttribute("VERSION", "0.3");
+        writer.writeDefaultNamespace(NAMESPACE);
+        writer.writeCharacters("\n");
+        writer.writeStartElement("NETWORK");
+        writer.writeCharacters("\n");
+        writeElement(writer, "NAME", "Untitled");
+        for (Node node : network.getNodes()) {
+            writer.writeStartElement("VARIABLE");
+            writer.writeAttribute("TYPE", "nature");
+            writer.writeCharacters("\n\t");
+            writeElement(writer, "NAME", node.getLabel());
+            writer.writeCharacters("\t");
+            writeElement(writer, "OUTCOME", "T");
+            writer.writeCharacters("\t");
+            writeElement(writer, "OUTCOME", "F");
+            writer.writeEndElement();
+            writer.writeCharacters("\n");
+        }
+        for (Node node : network.getNodes()) {
+            writer.writeStartElement("DEFINITION");
+            writer.writeCharacters("\n\t");
+            writeElement(writer, "FOR", node.getLabel());
+            for (Node parent : node.getParents()) {
+                writer.writeCharacters("\t");
+                writeElement(writer, "GIVEN", parent.getLabel());
+            }
+            // true outcomes come first, so the XMLBIF table is the cpt with every bit flipped, i.e. reversed
+            Factor cpt = node.getCpt();
+            StringBuilder table = new StringBuilder();
+            for (int i = cpt.getTableSize() - 1; i >= 0; i--) {
+                table.append(cpt.getValue(i));
+                if (i > 0) {
+                    table.append(' ');
+                }
+            }
+            writer.writeCharacters("\t");
+            writeElement(writer, "TABLE", table.toString());
+            writer.writeEndElement();
+            writer.writeCharacters("\n");
+        }
+        writer.writeEndElement();
+        writer.writeCharacters("\n");
+        writer.writeEndElement();
+        writer.writeEndDocument();
+    }
+
+    /**
+     * Writes an element containing only text, followed by a new line.
+     *
+     * @param writer XML stream writer
+     * @param name   element name
+     * @param text   element text
+     * @throws XMLStreamException if the XML cannot be written
+     */
+    private static void writeElement(XMLStreamWriter writer, String name, String text) throws XMLStreamException {
+        writer.writeStartElement(name);
+        writer.writeCharacters(text);
+        writer.writeEndElement();
+        writer.writeCharacters("\n");
+    }
+
+    /**
+     * Checks if an outcome name represents the true value of a random variable.
+     *
+     * @param outcome outcome name
+     * @return True if the outcome is true
+     */
+    private static boolean isTrueOutcome(String outcome) {
+        return outcome.equalsIgnoreCase("T") || outcome.equalsIgnoreCase("true");
+    }
+}
@@ -0,0 +1,84 @@
+package core.benchmark;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * Benchmark Runner Class.
+ * This class measures the throughput of an operation. Like JMH, it runs a number of timed warmup iterations
+ * that are discarded, followed by timed measurement iterations, and feeds every result into a sink
+ * so the JIT cannot remove the measured work.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class BenchmarkRunner {
+    private final int warmupIterations;
+    private final int measurementIterations;
+    private final long iterationNanos;
+    // results are accumulated here so the benchmarked code is never dead
+    private volatile double sink;
+
+    /**
+     * Constructor specifying the number of iterations and their duration.
+     *
+     * @param warmupIterations      number of discarded iterations
+     * @param measurementIterations number of measured iterations
+     * @param iterationMillis       duration of each iteration in milliseconds
+     */
+    public BenchmarkRunner(int warmupIterations, int measurementIterations, long iterationMillis) {
+        this.warmupIterations = warmupIterations;
+        this.measurementIterations = measurementIterations;
+        this.iterationNanos = iterationMillis * 1_000_000;
+    }
+
+    /**
+     * Runs a benchmark and prints its throughput.
+     *
+     * @param name      benchmark name
+     * @param parameter benchmark parameter
+     * @param operation operation to measure
+     * @return mean throughput in operations per second
+     */
+    public double run(String name, String parameter, DoubleSupplier operation) {
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(operation);
+        }
+        double[] scores = new double[measurementIterations];
+        for (int i = 0; i < measurementIterations; i++) {
+            scores[i] = iteration(operation);
+        }
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.length;
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double error = scores.length > 1 ? Math.sqrt(variance / (scores.length - 1)) : 0;
+        System.out.printf("%-40s %-12s %16.1f +- %12.1f ops/s%n", name, parameter, mean, error);
+        return mean;
+    }
+
+    /**
+     * Runs the operation for the duration of one iteration.
+     *
+     * @param operation operation to measure
+     * @return throughput of the iteration in operations per second
+     */
+    private double iteration(DoubleSupplier operation) {
+        long operations = 0;
+        double total = 0;
+        long start = System.nanoTime();
+        long elapsed;
+        do {
+            total += operation.getAsDouble();
+            operations++;
+            elapsed = System.nanoTime() - start;
+        } while (elapsed < iterationNanos);
+        sink += total;
+        return operations * 1e9 / elapsed;
+    }
+}
@@ -0,0 +1,158 @@
+package core.benchmark;
+
+import core.BayesianNetwork;
+import core.Factor;
+import core.NetworkGenerator;
+import core.Node;
+import core.inference.AdaptiveImportanceSampler;
+import core.inference.GibbsSampler;
+import core.inference.LikelihoodWeightingSampler;
+import core.inference.LoopyBeliefPropagation;
+import core.ordering.*;
+import core.query.QueryInfo;
+import core.query.QueryResult;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Inference Benchmark Class.
+ * This class benchmarks the hot paths of inference: the factor operations for a range of factor sizes,
+ * and queries and ordering strategies for every network.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class InferenceBenchmark {
+    private static final int[] FACTOR_SIZES = {4, 8, 12};
+    private static final String[] NETWORKS = {"BNA", "BNB", "BNC", "CNX"};
+    private final BenchmarkRunner runner;
+    private final Random random = new Random(IntermediateOrderingStrategy.SEED);
+
+    /**
+     * Constructor specifying the benchmark runner.
+     *
+     * @param runner benchmark runner
+     */
+    public InferenceBenchmark(BenchmarkRunner runner) {
+        this.runner = runner;
+    }
+
+    /**
+     * Runs every benchmark.
+     */
+    public void run() {
+        System.out.printf("%-40s %-12s %16s%n", "Benchmark", "Param", "Score");
+        benchmarkFactorOperations();
+        benchmarkQueries();
+        benchmarkOrderingStrategies();
+    }
+
+    /**
+     * Benchmarks join, sum out and projection for factors with an increasing number of random variables.
+     * The two joined factors share half of their random variables.
+     */
+    public void benchmarkFactorOperations() {
+        for (int size : FACTOR_SIZES) {
+            List<Node> variables = new ArrayList<>();
+            for (int i = 0; i < size + size / 2; i++) {
+                variables.add(new Node("X" + i));
+            }
+            Factor left = randomFactor(variables.subList(0, size));
+            Factor right = randomFactor(variables.subList(size / 2, size + size / 2));
+            Node shared = variables.get(size / 2);
+            String parameter = "vars=" + size;
+            runner.run("Factor.join", parameter, () -> left.join(right).getValue(0));
+            runner.run("Factor.sumOut", parameter, () -> left.sumOut(shared).getValue(0));
+            runner.run("Factor.sumProduct", parameter, () -> Factor.sumProduct(List.of(left, right), shared).getValue(0));
+            runner.run("Factor.projectToZero", parameter, () -> {
+                Factor copy = left.copy();
+                copy.projectToZero(shared, true);
+                return copy.getValue(0);
+            });
+            runner.run("Factor.reduce", parameter, () -> left.reduce(shared, true).getValue(0));
+        }
+    }
+
+    /**
+     * Benchmarks queries for the first random variable of every network, eliminating in insertion order.
+     * Networks with more than two random variables are also queried with evidence on the last one,
+     * exactly, by sampling and by loopy belief propagation, and every other random variable is queried with the
+     * same evidence one by one and as a batch.
+     */
+    public void benchmarkQueries() {
+        for (String networkId : NETWORKS) {
+            BayesianNetwork network = NetworkGenerator.buildNetwork(networkId);
+            List<String> labels = labels(network);
+            String target = labels.get(0);
+            String evidence = labels.get(labels.size() - 1);
+            network.setOrdering(new ProvidedOrderingStrategy(labels.subList(1, labels.size()).toArray(String[]::new)));
+            QueryInfo prior = new QueryInfo(target, true);
+            QueryInfo posterior = new QueryInfo(target, true, List.<String[]>of(new String[]{evidence, "T"}));
+            runner.run("BayesianNetwork.query", networkId, () -> network.query(prior).getProbability());
+            runner.run("BayesianNetwork.query(evidence)", networkId, () -> network.query(posterior).getProbability());
+            List<QueryInfo> batch = new ArrayList<>();
+            labels.subList(0, labels.size() - 1).forEach(label -> batch.add(new QueryInfo(label, true, List.<String[]>of(new String[]{evidence, "T"}))));
+            runner.run("BayesianNetwork.query(evidence, each)", networkId, () -> batch.stream().mapToDouble(queryInfo -> network.query(queryInfo).getProbability()).sum());
+            runner.run("BayesianNetwork.queryAll(evidence)", networkId, () -> network.queryAll(batch).stream().mapToDouble(QueryResult::getProbability).sum());
+            LikelihoodWeightingSampler sampler = new LikelihoodWeightingSampler(network);
+            sampler.setNoOfSamples(10_000);
+            runner.run("LikelihoodWeighting.query(evidence)", networkId, () -> sampler.query(posterior).getProbability());
+            GibbsSampler gibbsSampler = new GibbsSampler(network);
+            runner.run("Gibbs.query(evidence)", networkId, () -> gibbsSampler.query(posterior).getProbability());
+            AdaptiveImportanceSampler importanceSampler = new AdaptiveImportanceSampler(network);
+            runner.run("AdaptiveImportance.query(evidence)", networkId, () -> importanceSampler.query(posterior).getProbability());
+            LoopyBeliefPropagation beliefPropagation = new LoopyBeliefPropagation(network);
+            runner.run("LoopyBeliefPropagation.query(evidence)", networkId, () -> beliefPropagation.query(posterior).getProbability());
+        }
+    }
+
+    /**
+     * Benchmarks the automatic ordering strategies for every network.
+     */
+    public void benchmarkOrderingStrategies() {
+        Map<String, Supplier<IntermediateOrderingStrategy>> strategies = new LinkedHashMap<>();
+        strategies.put("MaxCardinalitySearch.getOrder", MaxCardinalitySearchOrderingStrategy::new);
+        strategies.put("Greedy.getOrder", GreedyOrderingStrategy::new);
+        strategies.put("MinFill.getOrder", MinFillOrderingStrategy::new);
+        strategies.put("WeightedMinFill.getOrder", WeightedMinFillOrderingStrategy::new);
+        strategies.put("MinDegree.getOrder", MinDegreeOrderingStrategy::new);
+        strategies.put("Caching(MinFill).getOrder", () -> new CachingOrderingStrategy(new MinFillOrderingStrategy(), 64));
+        for (String networkId : NETWORKS) {
+            BayesianNetwork network = NetworkGenerator.buildNetwork(networkId);
+            QueryInfo queryInfo = new QueryInfo(labels(network).get(0), true);
+            strategies.forEach((name, strategySupplier) -> {
+                IntermediateOrderingStrategy strategy = strategySupplier.get();
+                network.setOrdering(strategy);
+                runner.run(name, networkId, () -> strategy.getOrder(queryInfo).size());
+            });
+        }
+    }
+
+    /**
+     * Creates a factor with random probabilities.
+     *
+     * @param variables random variables of the factor
+     * @return factor
+     */
+    private Factor randomFactor(List<Node> variables) {
+        Factor factor = new Factor(new LinkedHashSet<>(variables));
+        for (int i = 0; i < factor.getTableSize(); i++) {
+            factor.setValue(i, random.nextDouble());
+        }
+        return factor;
+    }
+
+    /**
+     * Gets the labels of the network nodes in insertion order.
+     *
+     * @param network bayesian network
+     * @return labels
+     */
+    private static List<String> labels(BayesianNetwork network) {
+        List<String> labels = new ArrayList<>();
+        network.getNodes().forEach(node -> labels.add(node.getLabel()));
+        return labels;
+    }
+}
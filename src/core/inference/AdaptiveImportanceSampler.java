@@ -0,0 +1,370 @@
+package core.inference;
+
+import core.BayesianNetwork;
+import core.query.ApproximateQueryResult;
+import core.query.QueryInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Adaptive Importance Sampler Class.
+ * This class estimates queries by importance sampling from learned importance cpts, in the style of AIS-BN.
+ * The importance cpts start as the network cpts with small probabilities raised to a threshold, and during warm-up
+ * they are moved towards the posterior distribution given the evidence, estimated from the weighted samples of
+ * each stage with a decreasing learning rate. Samples are then drawn from the fixed importance cpts in parallel
+ * batches, each weighted by the ratio of the network probability to the importance probability, so the mean weight
+ * estimates the probability of the evidence. A query is the ratio of two such estimates, the query value with the
+ * evidence over the evidence alone, so a rare query value is sampled as often as a common one. Sampling stops once
+ * the relative error of the query reaches the target or the sample limit is reached.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class AdaptiveImportanceSampler implements InferenceEngine {
+    public static final long SEED = 123;
+    private static final int CHUNK_SIZE = 4096;
+    // learning rate decreases from the initial to the final rate over the warm-up stages
+    private static final double INITIAL_LEARNING_RATE = 0.4;
+    private static final double FINAL_LEARNING_RATE = 0.14;
+    // importance probabilities are never below the threshold, so unlikely values can still be sampled
+    private static final double PROBABILITY_THRESHOLD = 0.04;
+    private final SamplingModel model;
+    private final ForkJoinPool pool;
+    private int noOfStages = 10;
+    private int stageSize = 2_000;
+    private long maxSamples = 1_000_000;
+    private double targetRelativeError = 0.01;
+    private long seed = SEED;
+
+    /**
+     * Constructor specifying the network, samples are drawn on the common pool.
+     *
+     * @param network bayesian network
+     */
+    public AdaptiveImportanceSampler(BayesianNetwork network) {
+        this(network, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor specifying the network and the pool to draw samples on.
+     *
+     * @param network bayesian network
+     * @param pool    fork join pool
+     */
+    public AdaptiveImportanceSampler(BayesianNetwork network, ForkJoinPool pool) {
+        this.model = new SamplingModel(network);
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the number of warm-up stages, the importance cpts are updated after each one.
+     *
+     * @param noOfStages number of warm-up stages
+     */
+    public void setNoOfStages(int noOfStages) {
+        this.noOfStages = noOfStages;
+    }
+
+    /**
+     * Sets the number of samples drawn in each warm-up stage.
+     *
+     * @param stageSize number of samples per stage
+     */
+    public void setStageSize(int stageSize) {
+        this.stageSize = stageSize;
+    }
+
+    /**
+     * Sets the maximum number of samples drawn after warm-up.
+     *
+     * @param maxSamples maximum number of samples
+     */
+    public void setMaxSamples(long maxSamples) {
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Sets the relative error at which sampling stops.
+     *
+     * @param targetRelativeError target relative error, or 0 to always draw the maximum number of samples
+     */
+    public void setTargetRelativeError(double targetRelativeError) {
+        this.targetRelativeError = targetRelativeError;
+    }
+
+    /**
+     * Sets the seed of the random generators.
+     *
+     * @param seed seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Estimates the probability of a query. A query on an observed random variable is answered from the evidence.
+     *
+     * @param queryInfo query info object containing the query variable, its value and a list of evidence
+     * @return estimate with its standard error, the number of samples and the effective sample size
+     */
+    @Override
+    public ApproximateQueryResult query(QueryInfo queryInfo) {
+        int target = model.indexOf(queryInfo.getLabel());
+        if (target < 0) {
+            return new ApproximateQueryResult(0.0, 0.0, 0, 0.0);
+        }
+        int[] evidence = model.getEvidence(queryInfo.getEvidences());
+        int queryValue = queryInfo.getQueryValue() ? 1 : 0;
+        if (evidence[target] >= 0) {
+            // the value of an observed random variable is known, nothing needs to be sampled
+            return new ApproximateQueryResult(evidence[target] == queryValue ? 1.0 : 0.0, 0.0, 0, 0.0);
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        // the query is the ratio of the probability of the query value with the evidence to the probability
+        // of the evidence, each estimated with importance cpts learned for its own evidence
+        int[] jointEvidence = evidence.clone();
+        jointEvidence[target] = queryValue;
+        Estimation joint = new Estimation(jointEvidence, random.split());
+        Estimation marginal = queryInfo.hasEvidence() ? new Estimation(evidence, random.split()) : null;
+
+        int noOfBatchesPerRound = Math.max(pool.getParallelism(), 1);
+        while (joint.estimate.getNoOfSamples() < maxSamples) {
+            // draw rounds of batches in parallel until the estimate is accurate enough
+            List<ImportanceTask> tasks = new ArrayList<>();
+            joint.submit(tasks, noOfBatchesPerRound);
+            if (marginal != null) {
+                marginal.submit(tasks, noOfBatchesPerRound);
+            }
+            // combine in batch order so the sums do not depend on which batch finished first
+            tasks.forEach(task -> task.estimation.estimate.add(task.join()));
+            if (getRelativeError(joint, marginal) <= targetRelativeError) {
+                break;
+            }
+        }
+
+        double probability = marginal == null ? joint.getProbability() : joint.getProbability() / marginal.getProbability();
+        if (Double.isNaN(probability)) {
+            probability = 0.0;
+        }
+        double relativeError = getRelativeError(joint, marginal);
+        double standardError = probability > 0 ? probability * relativeError : Double.POSITIVE_INFINITY;
+        long noOfSamples = joint.estimate.getNoOfSamples() + (marginal == null ? 0 : marginal.estimate.getNoOfSamples());
+        double effectiveSampleSize = marginal == null ? joint.estimate.getEffectiveSampleSize()
+                : Math.min(joint.estimate.getEffectiveSampleSize(), marginal.estimate.getEffectiveSampleSize());
+        return new ApproximateQueryResult(probability, standardError, noOfSamples, effectiveSampleSize);
+    }
+
+    /**
+     * Gets the relative error of the ratio of two estimates, combining their independent relative errors.
+     *
+     * @param joint    estimate of the query value with the evidence
+     * @param marginal estimate of the evidence, or null if there is no evidence
+     * @return relative error
+     */
+    private static double getRelativeError(Estimation joint, Estimation marginal) {
+        double jointError = joint.getRelativeError();
+        double marginalError = marginal == null ? 0.0 : marginal.getRelativeError();
+        return Math.sqrt(jointError * jointError + marginalError * marginalError);
+    }
+
+    /**
+     * Learns the importance cpts of the unobserved random variables during the warm-up stages.
+     *
+     * @param order    node ids to sample in topological order
+     * @param evidence observed values indexed by node id
+     * @param random   random generator
+     * @return probability of each random variable being true for each configuration of its parents, indexed by node id
+     */
+    private double[][] learnImportance(int[] order, int[] evidence, SplittableRandom random) {
+        int n = model.size();
+        double[][] importance = new double[n][];
+        double[][] trueWeights = new double[n][];
+        double[][] totalWeights = new double[n][];
+        for (int id : order) {
+            importance[id] = model.getTrueProbabilities(id).clone();
+            trueWeights[id] = new double[importance[id].length];
+            totalWeights[id] = new double[importance[id].length];
+            if (evidence[id] < 0) {
+                applyThreshold(importance[id]);
+            }
+        }
+        boolean[] values = new boolean[n];
+        for (int id : order) {
+            values[id] = evidence[id] == 1;
+        }
+        for (int stage = 0; stage < noOfStages; stage++) {
+            for (int id : order) {
+                Arrays.fill(trueWeights[id], 0.0);
+                Arrays.fill(totalWeights[id], 0.0);
+            }
+            for (int sample = 0; sample < stageSize; sample++) {
+                double weight = drawSample(order, evidence, importance, values, random);
+                if (weight == 0) {
+                    continue;
+                }
+                for (int id : order) {
+                    if (evidence[id] < 0) {
+                        int configuration = model.getParentConfiguration(id, values);
+                        totalWeights[id][configuration] += weight;
+                        if (values[id]) {
+                            trueWeights[id][configuration] += weight;
+                        }
+                    }
+                }
+            }
+            double learningRate = INITIAL_LEARNING_RATE
+                    * Math.pow(FINAL_LEARNING_RATE / INITIAL_LEARNING_RATE, (double) stage / noOfStages);
+            for (int id : order) {
+                if (evidence[id] >= 0) {
+                    continue;
+                }
+                for (int configuration = 0; configuration < importance[id].length; configuration++) {
+                    // configurations that were never sampled keep their importance probability
+                    if (totalWeights[id][configuration] > 0) {
+                        double posterior = trueWeights[id][configuration] / totalWeights[id][configuration];
+                        importance[id][configuration] += learningRate * (posterior - importance[id][configuration]);
+                    }
+                }
+                applyThreshold(importance[id]);
+            }
+        }
+        return importance;
+    }
+
+    /**
+     * Raises small probabilities of either value to the threshold.
+     *
+     * @param trueProbabilities probabilities of being true for each parent configuration
+     */
+    private static void applyThreshold(double[] trueProbabilities) {
+        for (int configuration = 0; configuration < trueProbabilities.length; configuration++) {
+            trueProbabilities[configuration] = Math.min(Math.max(trueProbabilities[configuration], PROBABILITY_THRESHOLD),
+                    1 - PROBABILITY_THRESHOLD);
+        }
+    }
+
+    /**
+     * Draws a sample from the importance cpts with the evidence fixed.
+     *
+     * @param order      node ids to sample in topological order
+     * @param evidence   observed values indexed by node id
+     * @param importance importance cpts indexed by node id
+     * @param values     sample values indexed by node id, evidence values must already be set
+     * @param random     random generator
+     * @return weight of the sample, the network probability over the importance probability
+     */
+    private double drawSample(int[] order, int[] evidence, double[][] importance, boolean[] values, SplittableRandom random) {
+        double weight = 1.0;
+        for (int id : order) {
+            int configuration = model.getParentConfiguration(id, values);
+            double trueProbability = model.getTrueProbabilities(id)[configuration];
+            if (evidence[id] < 0) {
+                double importanceProbability = importance[id][configuration];
+                values[id] = random.nextDouble() < importanceProbability;
+                weight *= values[id] ? trueProbability / importanceProbability
+                        : (1 - trueProbability) / (1 - importanceProbability);
+            } else {
+                weight *= values[id] ? trueProbability : 1 - trueProbability;
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Estimation Class.
+     * Estimate of the probability of a set of evidence, with the importance cpts learned for it.
+     */
+    private class Estimation {
+        private final int[] order;
+        private final int[] evidence;
+        private final double[][] importance;
+        private final SplittableRandom random;
+        private final WeightedEstimate estimate = new WeightedEstimate();
+
+        private Estimation(int[] evidence, SplittableRandom random) {
+            List<Integer> ids = new ArrayList<>();
+            for (int id = 0; id < evidence.length; id++) {
+                if (evidence[id] >= 0) {
+                    ids.add(id);
+                }
+            }
+            // only the ancestors of the evidence affect its probability
+            this.order = model.getAncestralOrder(ids.stream().mapToInt(Integer::intValue).toArray());
+            this.evidence = evidence;
+            this.random = random;
+            this.importance = learnImportance(order, evidence, random.split());
+        }
+
+        /**
+         * Submits a round of batches to the pool.
+         *
+         * @param tasks       submitted tasks
+         * @param noOfBatches  number of batches
+         */
+        private void submit(List<ImportanceTask> tasks, int noOfBatches) {
+            long remaining = maxSamples - estimate.getNoOfSamples();
+            for (int b = 0; b < noOfBatches && remaining > 0; b++, remaining -= CHUNK_SIZE) {
+                ImportanceTask task = new ImportanceTask(this, (int) Math.min(remaining, CHUNK_SIZE), random.split());
+                tasks.add(task);
+                pool.execute(task);
+            }
+        }
+
+        /**
+         * Gets the estimated probability of the evidence.
+         *
+         * @return estimated probability
+         */
+        private double getProbability() {
+            return estimate.getMeanWeight();
+        }
+
+        /**
+         * Gets the relative error of the estimated probability of the evidence.
+         *
+         * @return relative error, or infinity if the estimate is 0
+         */
+        private double getRelativeError() {
+            double probability = getProbability();
+            return probability > 0 ? estimate.getMeanWeightStandardError() / probability : Double.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Importance Task Class.
+     * Draws a batch of weighted samples from the importance cpts of an estimation.
+     */
+    private class ImportanceTask extends RecursiveTask<WeightedEstimate> {
+        private static final long serialVersionUID = 1L;
+
+        private final Estimation estimation;
+        private final int noOfSamples;
+        private final SplittableRandom random;
+
+        private ImportanceTask(Estimation estimation, int noOfSamples, SplittableRandom random) {
+            this.estimation = estimation;
+            this.noOfSamples = noOfSamples;
+            this.random = random;
+        }
+
+        @Override
+        protected WeightedEstimate compute() {
+            WeightedEstimate estimate = new WeightedEstimate();
+            boolean[] values = new boolean[model.size()];
+            for (int id : estimation.order) {
+                // evidence values never change
+                values[id] = estimation.evidence[id] == 1;
+            }
+            for (int sample = 0; sample < noOfSamples; sample++) {
+                estimate.add(drawSample(estimation.order, estimation.evidence, estimation.importance, values, random), true);
+            }
+            return estimate;
+        }
+    }
+}
@@ -0,0 +1,419 @@
+package core.inference;
+
+import core.BayesianNetwork;
+import core.query.GibbsQueryResult;
+import core.query.QueryInfo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Gibbs Sampler Class.
+ * This class estimates queries by running several Markov chains in parallel, one per thread of the pool.
+ * Each chain repeatedly resamples every unobserved random variable from its distribution given its Markov blanket,
+ * the parents, children and parents of the children. Chains run in rounds, and after every round the
+ * potential scale reduction factor (R-hat) of the query variable is computed; sampling stops early once it is
+ * below the threshold and the effective sample size is large enough. Only the ancestors of the query and evidence random variables are sampled.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class GibbsSampler implements InferenceEngine {
+    public static final long SEED = 123;
+    // samples of a chain are grouped into batches, whose means are close to independent
+    private static final int NO_OF_BATCHES_PER_ROUND = 10;
+    // forward samples drawn to find a starting state the evidence is possible in
+    private static final int MAX_INITIAL_ATTEMPTS = 10_000;
+    private final SamplingModel model;
+    private final ForkJoinPool pool;
+    private int noOfChains;
+    private int burnIn = 1_000;
+    private int roundSize = 1_000;
+    private int maxSamples = 100_000;
+    private double rHatThreshold = 1.01;
+    private double minEffectiveSampleSize = 1_000;
+    private long seed = SEED;
+
+    /**
+     * Constructor specifying the network, chains run on the common pool.
+     *
+     * @param network bayesian network
+     */
+    public GibbsSampler(BayesianNetwork network) {
+        this(network, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor specifying the network and the pool to run chains on, with one chain per thread.
+     *
+     * @param network bayesian network
+     * @param pool    fork join pool
+     */
+    public GibbsSampler(BayesianNetwork network, ForkJoinPool pool) {
+        this.model = new SamplingModel(network);
+        this.pool = pool;
+        // R-hat compares chains, so at least two are needed
+        this.noOfChains = Math.max(pool.getParallelism(), 2);
+    }
+
+    /**
+     * Sets the number of chains.
+     *
+     * @param noOfChains number of chains, at least 2
+     */
+    public void setNoOfChains(int noOfChains) {
+        this.noOfChains = Math.max(noOfChains, 2);
+    }
+
+    /**
+     * Sets the number of sweeps each chain discards before keeping samples.
+     *
+     * @param burnIn number of discarded sweeps
+     */
+    public void setBurnIn(int burnIn) {
+        this.burnIn = burnIn;
+    }
+
+    /**
+     * Sets the number of samples each chain draws between convergence checks.
+     *
+     * @param roundSize number of samples per round
+     */
+    public void setRoundSize(int roundSize) {
+        this.roundSize = roundSize;
+    }
+
+    /**
+     * Sets the maximum number of samples each chain keeps.
+     *
+     * @param maxSamples maximum number of samples per chain
+     */
+    public void setMaxSamples(int maxSamples) {
+        this.maxSamples = maxSamples;
+    }
+
+    /**
+     * Sets the R-hat below which the chains are considered converged.
+     *
+     * @param rHatThreshold R-hat threshold
+     */
+    public void setRHatThreshold(double rHatThreshold) {
+        this.rHatThreshold = rHatThreshold;
+    }
+
+    /**
+     * Sets the effective sample size the chains need before stopping early.
+     *
+     * @param minEffectiveSampleSize minimum effective sample size
+     */
+    public void setMinEffectiveSampleSize(double minEffectiveSampleSize) {
+        this.minEffectiveSampleSize = minEffectiveSampleSize;
+    }
+
+    /**
+     * Sets the seed of the random generators.
+     *
+     * @param seed seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Estimates the probability of a query. Every chain starts from a forward sample the evidence is possible in;
+     * if none is found, no samples are drawn and the result is not converged.
+     *
+     * @param queryInfo query info object containing the query variable, its value and a list of evidence
+     * @return estimate with its confidence interval, the number of samples and the convergence of the chains
+     */
+    @Override
+    public GibbsQueryResult query(QueryInfo queryInfo) {
+        int target = model.indexOf(queryInfo.getLabel());
+        if (target < 0) {
+            return new GibbsQueryResult(0.0, 0.0, 0, 0.0, Double.NaN, false);
+        }
+        int[] evidence = model.getEvidence(queryInfo.getEvidences());
+        List<Integer> ids = new ArrayList<>();
+        ids.add(target);
+        for (int id = 0; id < evidence.length; id++) {
+            if (evidence[id] >= 0) {
+                ids.add(id);
+            }
+        }
+        int[] order = model.getAncestralOrder(ids.stream().mapToInt(Integer::intValue).toArray());
+        // children outside the ancestors are barren, so they are left out of the Markov blankets
+        boolean[] sampled = new boolean[model.size()];
+        for (int id : order) {
+            sampled[id] = true;
+        }
+        int[][] children = new int[model.size()][];
+        for (int id : order) {
+            children[id] = Arrays.stream(model.getChildren(id)).filter(child -> sampled[child]).toArray();
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        int batchSize = Math.max(roundSize / NO_OF_BATCHES_PER_ROUND, 1);
+        Chain[] chains = new Chain[noOfChains];
+        for (int c = 0; c < noOfChains; c++) {
+            chains[c] = new Chain(order, children, evidence, target, random.split(), batchSize, maxSamples / batchSize + 1);
+            if (!chains[c].consistent) {
+                // the evidence is impossible or too unlikely to start from, nothing can be estimated
+                return new GibbsQueryResult(0.0, Double.POSITIVE_INFINITY, 0, 0.0, Double.NaN, false);
+            }
+        }
+        runRound(chains, burnIn, false);
+
+        double rHat = Double.POSITIVE_INFINITY;
+        double standardError = Double.POSITIVE_INFINITY;
+        boolean converged = false;
+        int noOfSamples = 0;
+        while (noOfSamples < maxSamples) {
+            int size = Math.min(roundSize, maxSamples - noOfSamples);
+            runRound(chains, size, true);
+            noOfSamples += size;
+            rHat = getRHat(chains, noOfSamples);
+            standardError = getStandardError(chains, noOfSamples);
+            if (rHat < rHatThreshold && getEffectiveSampleSize(chains, noOfSamples, standardError) >= minEffectiveSampleSize) {
+                converged = true;
+                break;
+            }
+        }
+
+        long totalSamples = (long) noOfSamples * noOfChains;
+        double probability = getMean(chains, noOfSamples);
+        double effectiveSampleSize = getEffectiveSampleSize(chains, noOfSamples, standardError);
+        if (!queryInfo.getQueryValue()) {
+            probability = 1 - probability;
+        }
+        return new GibbsQueryResult(probability, standardError, totalSamples, effectiveSampleSize, rHat, converged);
+    }
+
+    /**
+     * Runs every chain for a number of sweeps in parallel.
+     *
+     * @param chains      chains
+     * @param noOfSweeps  number of sweeps
+     * @param keepSamples True to count the samples of the query variable
+     */
+    private void runRound(Chain[] chains, int noOfSweeps, boolean keepSamples) {
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (Chain chain : chains) {
+            RecursiveAction task = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    chain.run(noOfSweeps, keepSamples);
+                }
+            };
+            tasks.add(task);
+            pool.execute(task);
+        }
+        tasks.forEach(RecursiveAction::join);
+    }
+
+    /**
+     * Gets the fraction of the kept samples of every chain where the query variable is true.
+     *
+     * @param chains      chains
+     * @param noOfSamples number of samples kept by each chain
+     * @return estimated probability
+     */
+    private static double getMean(Chain[] chains, int noOfSamples) {
+        double noOfTrueSamples = 0.0;
+        for (Chain chain : chains) {
+            noOfTrueSamples += chain.noOfTrueSamples;
+        }
+        return noOfTrueSamples / ((double) noOfSamples * chains.length);
+    }
+
+    /**
+     * Computes the standard error of the estimate from the spread of the batch means of every chain.
+     * It is never below the standard error of as many independent samples, with the Agresti-Coull adjustment
+     * so that chains that never change value do not report a certain estimate.
+     *
+     * @param chains      chains
+     * @param noOfSamples number of samples kept by each chain
+     * @return standard error
+     */
+    private static double getStandardError(Chain[] chains, int noOfSamples) {
+        double probability = getMean(chains, noOfSamples);
+        double batchVariance = 0.0;
+        int noOfBatches = 0;
+        for (Chain chain : chains) {
+            for (int b = 0; b < chain.noOfBatches; b++) {
+                double difference = chain.batchMeans[b] - probability;
+                batchVariance += difference * difference;
+            }
+            noOfBatches += chain.noOfBatches;
+        }
+        double batchError = noOfBatches > 1 ? Math.sqrt(batchVariance / (noOfBatches - 1) / noOfBatches) : 0.0;
+        double totalSamples = (double) noOfSamples * chains.length;
+        double adjusted = (probability * totalSamples + 2) / (totalSamples + 4);
+        double independentError = Math.sqrt(adjusted * (1 - adjusted) / (totalSamples + 4));
+        return Math.max(batchError, independentError);
+    }
+
+    /**
+     * Gets the number of independent samples with the same standard error.
+     *
+     * @param chains        chains
+     * @param noOfSamples   number of samples kept by each chain
+     * @param standardError standard error of the estimate
+     * @return effective sample size
+     */
+    private static double getEffectiveSampleSize(Chain[] chains, int noOfSamples, double standardError) {
+        double totalSamples = (double) noOfSamples * chains.length;
+        double adjusted = (getMean(chains, noOfSamples) * totalSamples + 2) / (totalSamples + 4);
+        return Math.min(adjusted * (1 - adjusted) / (standardError * standardError), totalSamples);
+    }
+
+    /**
+     * Computes the potential scale reduction factor of the query variable, comparing the variance within
+     * each chain to the variance between the chains.
+     *
+     * @param chains      chains
+     * @param noOfSamples number of samples kept by each chain
+     * @return R-hat
+     */
+    private static double getRHat(Chain[] chains, int noOfSamples) {
+        if (noOfSamples < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        int m = chains.length;
+        double n = noOfSamples;
+        double[] means = new double[m];
+        double grandMean = 0.0;
+        double withinVariance = 0.0;
+        for (int c = 0; c < m; c++) {
+            means[c] = chains[c].noOfTrueSamples / n;
+            grandMean += means[c] / m;
+            // sample variance of an indicator
+            withinVariance += means[c] * (1 - means[c]) * n / (n - 1) / m;
+        }
+        double betweenVariance = 0.0;
+        for (double mean : means) {
+            betweenVariance += (mean - grandMean) * (mean - grandMean) * n / (m - 1);
+        }
+        if (withinVariance == 0) {
+            // every chain is stuck, they agree only if they are stuck on the same value
+            return betweenVariance == 0 ? 1.0 : Double.POSITIVE_INFINITY;
+        }
+        double pooledVariance = (n - 1) / n * withinVariance + betweenVariance / n;
+        return Math.sqrt(pooledVariance / withinVariance);
+    }
+
+    /**
+     * Chain Class.
+     * State of a Markov chain. Every array is allocated when the chain is created, so sweeps do not allocate.
+     */
+    private class Chain {
+        private final int[][] children;
+        private final int target;
+        private final SplittableRandom random;
+        private final boolean[] values;
+        private final double[][] trueProbabilities;
+        // unobserved random variables, the only ones that are resampled
+        private final int[] unobserved;
+        private final int batchSize;
+        private final double[] batchMeans;
+        private int noOfBatches;
+        private int noOfTrueSamplesInBatch;
+        private int noOfSamplesInBatch;
+        private long noOfTrueSamples;
+        // whether the chain starts from a state with a nonzero probability
+        private final boolean consistent;
+
+        private Chain(int[] order, int[][] children, int[] evidence, int target, SplittableRandom random, int batchSize, int maxBatches) {
+            this.children = children;
+            this.batchSize = batchSize;
+            this.batchMeans = new double[maxBatches];
+            this.target = target;
+            this.random = random;
+            this.values = new boolean[model.size()];
+            this.trueProbabilities = new double[model.size()][];
+            for (int id : order) {
+                trueProbabilities[id] = model.getTrueProbabilities(id);
+            }
+            this.unobserved = Arrays.stream(order).filter(id -> evidence[id] < 0).toArray();
+            // start from a forward sample with the evidence fixed that the evidence is possible in, otherwise a
+            // blanket with no support would keep the chain in an impossible state forever
+            boolean found = false;
+            for (int attempt = 0; attempt < MAX_INITIAL_ATTEMPTS && !found; attempt++) {
+                found = true;
+                for (int id : order) {
+                    double trueProbability = trueProbabilities[id][model.getParentConfiguration(id, values)];
+                    if (evidence[id] < 0) {
+                        values[id] = random.nextDouble() < trueProbability;
+                    } else {
+                        values[id] = evidence[id] == 1;
+                        found &= (values[id] ? trueProbability : 1 - trueProbability) > 0;
+                    }
+                }
+            }
+            this.consistent = found;
+        }
+
+        /**
+         * Resamples every unobserved random variable a number of times.
+         *
+         * @param noOfSweeps  number of sweeps
+         * @param keepSamples True to count the samples of the query variable
+         */
+        private void run(int noOfSweeps, boolean keepSamples) {
+            for (int sweep = 0; sweep < noOfSweeps; sweep++) {
+                for (int id : unobserved) {
+                    double trueProbability = trueProbabilities[id][model.getParentConfiguration(id, values)];
+                    double trueWeight = trueProbability * getChildrenProbability(id, true);
+                    double falseWeight = (1 - trueProbability) * getChildrenProbability(id, false);
+                    double total = trueWeight + falseWeight;
+                    // a blanket with no support keeps the current value
+                    if (total > 0) {
+                        values[id] = random.nextDouble() * total < trueWeight;
+                    }
+                }
+                if (keepSamples) {
+                    keepSample(values[target]);
+                }
+            }
+        }
+
+        /**
+         * Counts a sample of the query variable, closing the batch once it is full.
+         *
+         * @param value sampled value
+         */
+        private void keepSample(boolean value) {
+            if (value) {
+                noOfTrueSamples++;
+                noOfTrueSamplesInBatch++;
+            }
+            if (++noOfSamplesInBatch == batchSize) {
+                batchMeans[noOfBatches++] = (double) noOfTrueSamplesInBatch / batchSize;
+                noOfTrueSamplesInBatch = 0;
+                noOfSamplesInBatch = 0;
+            }
+        }
+
+        /**
+         * Gets the probability of the children of a random variable having their current values, given a value
+         * of the random variable.
+         *
+         * @param id    node id
+         * @param value value of the random variable
+         * @return product of the children conditional probabilities
+         */
+        private double getChildrenProbability(int id, boolean value) {
+            values[id] = value;
+            double probability = 1.0;
+            for (int child : children[id]) {
+                double trueProbability = trueProbabilities[child][model.getParentConfiguration(child, values)];
+                probability *= values[child] ? trueProbability : 1 - trueProbability;
+            }
+            return probability;
+        }
+    }
+}
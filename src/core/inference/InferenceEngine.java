@@ -0,0 +1,23 @@
+package core.inference;
+
+import core.query.QueryInfo;
+import core.query.QueryResult;
+
+/**
+ * Inference Engine Interface.
+ * This interface is implemented by the exact and approximate algorithms that answer queries on a compiled network.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public interface InferenceEngine {
+
+    /**
+     * Query a variable given the evidence of the query.
+     *
+     * @param queryInfo query info object containing the query variable, its value and a list of evidence
+     * @return query result with the probability
+     */
+    QueryResult query(QueryInfo queryInfo);
+}
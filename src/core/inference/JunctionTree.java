@@ -0,0 +1,378 @@
+package core.inference;
+
+import core.BayesianNetwork;
+import core.EliminationGraph;
+import core.Factor;
+import core.Node;
+import core.ordering.MinFillOrderingStrategy;
+import core.query.QueryInfo;
+import core.query.QueryResult;
+
+import java.util.*;
+
+/**
+ * Junction Tree Class.
+ * This class compiles a bayesian network into a tree of cliques of the moral graph triangulated with the minimum fill-in heuristic.
+ * Once compiled, the marginals of every random variable for a set of evidence are obtained with a single
+ * collect and distribute pass of messages over the tree, and the tree is reused for every set of evidence.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class JunctionTree implements InferenceEngine {
+    private final BayesianNetwork network;
+    private final List<Set<Node>> cliques = new ArrayList<>();
+    // clique potentials without evidence, the product of the cpts assigned to each clique
+    private final List<Factor> potentials = new ArrayList<>();
+    // tree structure, cliques are ordered so that parents always come before their children
+    private final List<Integer> parents = new ArrayList<>();
+    private final List<List<Integer>> children = new ArrayList<>();
+    // smallest clique containing each random variable
+    private final Map<Node, Integer> homeCliques = new LinkedHashMap<>();
+
+    /**
+     * Constructor specifying the network to compile.
+     *
+     * @param network bayesian network
+     */
+    private JunctionTree(BayesianNetwork network) {
+        this.network = network;
+    }
+
+    /**
+     * Compiles a bayesian network into a junction tree.
+     *
+     * @param network bayesian network
+     * @return junction tree of the network
+     */
+    public static JunctionTree compile(BayesianNetwork network) {
+        JunctionTree tree = new JunctionTree(network);
+        List<Set<Node>> cliques = tree.triangulate(new ArrayList<>(network.getNodes()));
+        tree.connectCliques(cliques);
+        tree.assignPotentials();
+        return tree;
+    }
+
+    /**
+     * Eliminates the moral graph using the minimum fill-in heuristic and collects the maximal cliques created.
+     *
+     * @param nodesList nodes of the network
+     * @return maximal cliques of the triangulated graph
+     */
+    private List<Set<Node>> triangulate(List<Node> nodesList) {
+        EliminationGraph graph = new EliminationGraph(nodesList);
+        int[] order = new MinFillOrderingStrategy().getEliminationOrder(graph);
+        List<Set<Node>> maximalCliques = new ArrayList<>();
+        for (int vertex : order) {
+            // the eliminated vertex and its neighbours form a clique of the triangulated graph
+            Set<Node> clique = new LinkedHashSet<>();
+            for (int neighbour : graph.getNeighbours(vertex)) {
+                clique.add(nodesList.get(neighbour));
+            }
+            clique.add(nodesList.get(vertex));
+            graph.eliminate(vertex);
+            if (maximalCliques.stream().noneMatch(c -> c.containsAll(clique))) {
+                maximalCliques.add(clique);
+            }
+        }
+        return maximalCliques;
+    }
+
+    /**
+     * Connects the cliques into a tree using a maximum spanning tree over the separator sizes,
+     * which guarantees the running intersection property. Disconnected parts of the network become separate trees.
+     *
+     * @param maximalCliques maximal cliques of the triangulated graph
+     */
+    private void connectCliques(List<Set<Node>> maximalCliques) {
+        int noOfCliques = maximalCliques.size();
+        // only cliques that share a random variable can be connected, so candidate edges are found through the
+        // cliques of each random variable and the separator sizes are counted along the way
+        Map<Node, List<Integer>> nodeCliques = new HashMap<>();
+        for (int i = 0; i < noOfCliques; i++) {
+            for (Node node : maximalCliques.get(i)) {
+                nodeCliques.computeIfAbsent(node, key -> new ArrayList<>()).add(i);
+            }
+        }
+        List<int[]> edges = new ArrayList<>();
+        int[] separatorSizes = new int[noOfCliques];
+        List<Integer> sharing = new ArrayList<>();
+        for (int i = 0; i < noOfCliques; i++) {
+            for (Node node : maximalCliques.get(i)) {
+                for (int j : nodeCliques.get(node)) {
+                    if (j > i && separatorSizes[j]++ == 0) {
+                        sharing.add(j);
+                    }
+                }
+            }
+            // keep the edges in clique order so ties are broken as before
+            Collections.sort(sharing);
+            for (int j : sharing) {
+                edges.add(new int[]{i, j, separatorSizes[j]});
+                separatorSizes[j] = 0;
+            }
+            sharing.clear();
+        }
+        edges.sort((a, b) -> Integer.compare(b[2], a[2]));
+
+        // kruskal with union find
+        int[] components = new int[noOfCliques];
+        List<List<Integer>> treeNeighbours = new ArrayList<>();
+        for (int i = 0; i < noOfCliques; i++) {
+            components[i] = i;
+            treeNeighbours.add(new ArrayList<>());
+        }
+        for (int[] edge : edges) {
+            int a = findComponent(components, edge[0]);
+            int b = findComponent(components, edge[1]);
+            if (a != b) {
+                components[a] = b;
+                treeNeighbours.get(edge[0]).add(edge[1]);
+                treeNeighbours.get(edge[1]).add(edge[0]);
+            }
+        }
+
+        // root every tree and store the cliques so that parents come before their children
+        int[] newIndex = new int[noOfCliques];
+        Arrays.fill(newIndex, -1);
+        for (int root = 0; root < noOfCliques; root++) {
+            if (newIndex[root] >= 0) {
+                continue;
+            }
+            Deque<int[]> queue = new ArrayDeque<>();
+            queue.add(new int[]{root, -1});
+            while (!queue.isEmpty()) {
+                int[] entry = queue.poll();
+                int clique = entry[0];
+                newIndex[clique] = cliques.size();
+                cliques.add(maximalCliques.get(clique));
+                parents.add(entry[1]);
+                children.add(new ArrayList<>());
+                if (entry[1] >= 0) {
+                    children.get(entry[1]).add(newIndex[clique]);
+                }
+                for (int neighbour : treeNeighbours.get(clique)) {
+                    // in a tree, only the parent of a clique is stored before it
+                    if (newIndex[neighbour] < 0) {
+                        queue.add(new int[]{neighbour, newIndex[clique]});
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the representative of a component in the union find structure.
+     *
+     * @param components union find parents
+     * @param i          element
+     * @return component representative
+     */
+    private static int findComponent(int[] components, int i) {
+        while (components[i] != i) {
+            components[i] = components[components[i]];
+            i = components[i];
+        }
+        return i;
+    }
+
+    /**
+     * Multiplies each cpt into a clique that contains its random variable and parents.
+     */
+    private void assignPotentials() {
+        for (Set<Node> clique : cliques) {
+            Factor potential = new Factor(clique);
+            for (int i = 0; i < potential.getTableSize(); i++) {
+                potential.setValue(i, 1.0);
+            }
+            potentials.add(potential);
+        }
+        for (Node node : network.getNodes()) {
+            Factor cpt = node.getCpt();
+            for (int c = 0; c < cliques.size(); c++) {
+                if (cliques.get(c).containsAll(cpt.getOrderedVariables())) {
+                    potentials.set(c, potentials.get(c).join(cpt));
+                    break;
+                }
+            }
+            int home = 0;
+            for (int c = 1; c < cliques.size(); c++) {
+                if (cliques.get(c).contains(node)
+                        && (!cliques.get(home).contains(node) || cliques.get(c).size() < cliques.get(home).size())) {
+                    home = c;
+                }
+            }
+            homeCliques.put(node, home);
+        }
+    }
+
+    /**
+     * Gets the cliques of the junction tree.
+     *
+     * @return cliques as sets of random variable nodes
+     */
+    public List<Set<Node>> getCliques() {
+        return cliques;
+    }
+
+    /**
+     * Calibrates the tree with a set of evidence and gets the probability of every random variable being true.
+     *
+     * @param evidences list of evidence
+     * @return map of random variable labels to their probability of being true given the evidence
+     */
+    public Map<String, Double> getMarginals(List<QueryInfo> evidences) {
+        Factor[] beliefs = calibrate(evidences);
+        Map<String, Double> marginals = new LinkedHashMap<>();
+        homeCliques.forEach((node, clique) -> {
+            Factor marginal = marginalize(List.of(beliefs[clique]), Set.of(node));
+            marginal.normalize();
+            marginals.put(node.getLabel(), marginal.getValue(1));
+        });
+        return marginals;
+    }
+
+    /**
+     * Queries a random variable using the calibrated junction tree.
+     *
+     * @param queryInfo query info object containing the query variable, its value and a list of evidence
+     * @return query result with the probability
+     */
+    @Override
+    public QueryResult query(QueryInfo queryInfo) {
+        Node queryNode = network.getNode(queryInfo.getLabel());
+        if (queryNode == null) {
+            return new QueryResult(0.0, new String[0]);
+        }
+        Factor[] beliefs = calibrate(queryInfo.getEvidences());
+        Factor marginal = marginalize(List.of(beliefs[homeCliques.get(queryNode)]), Set.of(queryNode));
+        marginal.normalize();
+        return new QueryResult(marginal.getValue(queryInfo.getQueryValue() ? 1 : 0), new String[0]);
+    }
+
+    /**
+     * Enters the evidence into the clique potentials and passes messages towards the roots and back.
+     *
+     * @param evidences list of evidence
+     * @return unnormalized belief of every clique
+     */
+    private Factor[] calibrate(List<QueryInfo> evidences) {
+        int noOfCliques = cliques.size();
+        Factor[] evidencePotentials = potentials.toArray(Factor[]::new);
+        for (QueryInfo evidence : evidences) {
+            Node evidenceNode = network.getNode(evidence.getLabel());
+            int clique = homeCliques.get(evidenceNode);
+            // the clique scopes are fixed, so evidence is entered by zeroing the inconsistent entries of a copy
+            Factor potential = evidencePotentials[clique] == potentials.get(clique)
+                    ? potentials.get(clique).copy() : evidencePotentials[clique];
+            potential.projectToZero(evidenceNode, !evidence.getQueryValue());
+            evidencePotentials[clique] = potential;
+        }
+
+        // collect messages from the leaves towards the roots
+        Factor[] upMessages = new Factor[noOfCliques];
+        for (int c = noOfCliques - 1; c >= 0; c--) {
+            if (parents.get(c) >= 0) {
+                List<Factor> toMultiply = new ArrayList<>();
+                toMultiply.add(evidencePotentials[c]);
+                children.get(c).forEach(child -> toMultiply.add(upMessages[child]));
+                upMessages[c] = scale(marginalize(toMultiply, separator(cliques.get(c), cliques.get(parents.get(c)))));
+            }
+        }
+
+        // distribute messages from the roots towards the leaves. The message to a child is the product of the
+        // parent potential, the message from its own parent and the messages from every other child, built from
+        // prefix and suffix products of the child messages so each clique needs a linear number of products
+        Factor[] downMessages = new Factor[noOfCliques];
+        Factor[] beliefs = new Factor[noOfCliques];
+        for (int c = 0; c < noOfCliques; c++) {
+            List<Integer> cliqueChildren = children.get(c);
+            int noOfChildren = cliqueChildren.size();
+            // prefix[i] includes the messages of the first i children. products are scaled like the messages,
+            // otherwise the product of many children underflows
+            Factor[] prefix = new Factor[noOfChildren + 1];
+            prefix[0] = downMessages[c] == null ? evidencePotentials[c] : scale(evidencePotentials[c].join(downMessages[c]));
+            for (int i = 0; i < noOfChildren; i++) {
+                prefix[i + 1] = scale(prefix[i].join(upMessages[cliqueChildren.get(i)]));
+            }
+            // suffix[i] includes the messages of the children from i onwards
+            Factor[] suffix = new Factor[noOfChildren + 1];
+            for (int i = noOfChildren - 1; i >= 0; i--) {
+                Factor upMessage = upMessages[cliqueChildren.get(i)];
+                suffix[i] = suffix[i + 1] == null ? upMessage : scale(upMessage.join(suffix[i + 1]));
+            }
+            for (int i = 0; i < noOfChildren; i++) {
+                int child = cliqueChildren.get(i);
+                List<Factor> toMultiply = new ArrayList<>();
+                toMultiply.add(prefix[i]);
+                if (suffix[i + 1] != null) {
+                    toMultiply.add(suffix[i + 1]);
+                }
+                downMessages[child] = scale(marginalize(toMultiply, separator(cliques.get(child), cliques.get(c))));
+            }
+            beliefs[c] = prefix[noOfChildren];
+        }
+        return beliefs;
+    }
+
+    /**
+     * Multiplies a list of factors and sums out every random variable not in the set to keep.
+     *
+     * @param factors factors to multiply
+     * @param toKeep  random variables to keep
+     * @return factor over the random variables to keep
+     */
+    private static Factor marginalize(List<Factor> factors, Set<Node> toKeep) {
+        Set<Node> toSumOut = new LinkedHashSet<>();
+        factors.forEach(factor -> toSumOut.addAll(factor.getOrderedVariables()));
+        toSumOut.removeAll(toKeep);
+        if (toSumOut.isEmpty()) {
+            // copy so the caller never modifies a clique potential
+            Factor product = factors.get(0).copy();
+            for (int i = 1; i < factors.size(); i++) {
+                product = product.join(factors.get(i));
+            }
+            return product;
+        }
+        Iterator<Node> iterator = toSumOut.iterator();
+        Factor marginal = Factor.sumProduct(factors, iterator.next());
+        while (iterator.hasNext()) {
+            marginal = marginal.sumOut(iterator.next());
+        }
+        return marginal;
+    }
+
+    /**
+     * Scales a message so its entries sum to one, which prevents underflow on large trees
+     * and does not change the normalized marginals.
+     *
+     * @param message message factor
+     * @return scaled message factor
+     */
+    private static Factor scale(Factor message) {
+        double total = 0;
+        for (int i = 0; i < message.getTableSize(); i++) {
+            total += message.getValue(i);
+        }
+        if (total > 0) {
+            for (int i = 0; i < message.getTableSize(); i++) {
+                message.setValue(i, message.getValue(i) / total);
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Gets the random variables shared by two cliques.
+     *
+     * @param a clique
+     * @param b other clique
+     * @return separator random variables
+     */
+    private static Set<Node> separator(Set<Node> a, Set<Node> b) {
+        Set<Node> separator = new LinkedHashSet<>(a);
+        separator.retainAll(b);
+        return separator;
+    }
+}
@@ -0,0 +1,180 @@
+package core.inference;
+
+import core.BayesianNetwork;
+import core.query.ApproximateQueryResult;
+import core.query.QueryInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Likelihood Weighting Sampler Class.
+ * This class estimates queries by sampling the network in topological order, fixing the evidence random variables
+ * to their observed values and weighting each sample by the probability of the evidence given its parents.
+ * Samples are drawn in fixed size chunks on a fork join pool, and each chunk has its own random generator split
+ * from the seed, so the estimate does not depend on the number of threads.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class LikelihoodWeightingSampler implements InferenceEngine {
+    public static final long SEED = 123;
+    private static final int CHUNK_SIZE = 4096;
+    // how often a chunk checks if the time limit has passed
+    private static final int DEADLINE_CHECK_INTERVAL = 256;
+    private final SamplingModel model;
+    private final ForkJoinPool pool;
+    private long noOfSamples = 100_000;
+    private long timeLimitMillis;
+    private long seed = SEED;
+
+    /**
+     * Constructor specifying the network, samples are drawn on the common pool.
+     *
+     * @param network bayesian network
+     */
+    public LikelihoodWeightingSampler(BayesianNetwork network) {
+        this(network, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor specifying the network and the pool to draw samples on.
+     *
+     * @param network bayesian network
+     * @param pool    fork join pool
+     */
+    public LikelihoodWeightingSampler(BayesianNetwork network, ForkJoinPool pool) {
+        this.model = new SamplingModel(network);
+        this.pool = pool;
+    }
+
+    /**
+     * Sets the number of samples drawn for each query.
+     *
+     * @param noOfSamples number of samples
+     */
+    public void setNoOfSamples(long noOfSamples) {
+        this.noOfSamples = noOfSamples;
+    }
+
+    /**
+     * Sets the time limit of each query, sampling stops early once it has passed.
+     *
+     * @param timeLimitMillis time limit in milliseconds, or 0 for no limit
+     */
+    public void setTimeLimitMillis(long timeLimitMillis) {
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    /**
+     * Sets the seed of the random generators.
+     *
+     * @param seed seed
+     */
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * Estimates the probability of a query.
+     *
+     * @param queryInfo query info object containing the query variable, its value and a list of evidence
+     * @return estimate with its confidence interval and the number of samples
+     */
+    @Override
+    public ApproximateQueryResult query(QueryInfo queryInfo) {
+        int target = model.indexOf(queryInfo.getLabel());
+        if (target < 0) {
+            return new ApproximateQueryResult(0.0, 0.0, 0, 0.0);
+        }
+        int[] evidence = model.getEvidence(queryInfo.getEvidences());
+        int[] order = getSamplingOrder(target, evidence);
+        long deadline = timeLimitMillis > 0 ? System.nanoTime() + timeLimitMillis * 1_000_000 : Long.MAX_VALUE;
+
+        SplittableRandom random = new SplittableRandom(seed);
+        List<WeightingTask> tasks = new ArrayList<>();
+        for (long remaining = noOfSamples; remaining > 0; remaining -= CHUNK_SIZE) {
+            WeightingTask task = new WeightingTask(order, evidence, target, (int) Math.min(remaining, CHUNK_SIZE), random.split(), deadline);
+            tasks.add(task);
+            pool.execute(task);
+        }
+        // combine in chunk order so the sums do not depend on which chunk finished first
+        WeightedEstimate estimate = new WeightedEstimate();
+        tasks.forEach(task -> estimate.add(task.join()));
+        return estimate.toResult(queryInfo.getQueryValue());
+    }
+
+    /**
+     * Gets the random variables that need to be sampled, the ancestors of the target and evidence.
+     *
+     * @param target   target node id
+     * @param evidence observed values indexed by node id
+     * @return node ids in topological order
+     */
+    private int[] getSamplingOrder(int target, int[] evidence) {
+        List<Integer> ids = new ArrayList<>();
+        ids.add(target);
+        for (int id = 0; id < evidence.length; id++) {
+            if (evidence[id] >= 0) {
+                ids.add(id);
+            }
+        }
+        return model.getAncestralOrder(ids.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Weighting Task Class.
+     * Draws a chunk of weighted samples.
+     */
+    private class WeightingTask extends RecursiveTask<WeightedEstimate> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] order;
+        private final int[] evidence;
+        private final int target;
+        private final int noOfSamples;
+        private final SplittableRandom random;
+        private final long deadline;
+
+        private WeightingTask(int[] order, int[] evidence, int target, int noOfSamples, SplittableRandom random, long deadline) {
+            this.order = order;
+            this.evidence = evidence;
+            this.target = target;
+            this.noOfSamples = noOfSamples;
+            this.random = random;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected WeightedEstimate compute() {
+            WeightedEstimate estimate = new WeightedEstimate();
+            boolean[] values = new boolean[model.size()];
+            double[][] trueProbabilities = new double[model.size()][];
+            for (int id : order) {
+                trueProbabilities[id] = model.getTrueProbabilities(id);
+                // evidence values never change
+                values[id] = evidence[id] == 1;
+            }
+            for (int sample = 0; sample < noOfSamples; sample++) {
+                if (sample % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() > deadline) {
+                    break;
+                }
+                double weight = 1.0;
+                for (int id : order) {
+                    double trueProbability = trueProbabilities[id][model.getParentConfiguration(id, values)];
+                    if (evidence[id] < 0) {
+                        values[id] = random.nextDouble() < trueProbability;
+                    } else {
+                        weight *= values[id] ? trueProbability : 1 - trueProbability;
+                    }
+                }
+                estimate.add(weight, values[target]);
+            }
+            return estimate;
+        }
+    }
+}
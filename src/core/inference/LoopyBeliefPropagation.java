@@ -0,0 +1,370 @@
+package core.inference;
+
+import core.BayesianNetwork;
+import core.Node;
+import core.ordering.IndexedMinHeap;
+import core.query.MarginalsResult;
+import core.query.QueryInfo;
+import core.query.QueryResult;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Loopy Belief Propagation Class.
+ * This class approximates the marginals of every random variable by passing messages on the factor graph of the
+ * network, where every cpt is a factor connected to the random variables of its node and parents.
+ * Messages are pairs of probabilities for false and true, normalized to sum to 1. Every outgoing message of a
+ * factor is computed in one pass over its table, so an iteration costs time linear in the total cpt size
+ * times the number of parents.
+ * The synchronous schedule updates every factor in parallel from the messages of the previous iteration, writing
+ * to a second buffer. The residual schedule updates one factor at a time, always the one whose messages would
+ * change the most. Messages are damped by mixing in the previous message, and propagation stops once no message
+ * changes by more than the threshold.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class LoopyBeliefPropagation implements InferenceEngine {
+    /**
+     * Order in which messages are updated.
+     */
+    public enum Schedule {
+        SYNCHRONOUS, RESIDUAL
+    }
+
+    private final BayesianNetwork network;
+    private final ForkJoinPool pool;
+    // random variables of each factor, the parents followed by the node, indexed by node id
+    private final int[][] factorVariables;
+    private final double[][] tables;
+    // message pairs of a factor start at twice the edge base of the factor
+    private final int[] edgeBase;
+    // factor and position of each edge, and the edges of each random variable
+    private final int[] edgeFactor;
+    private final int[][] variableEdges;
+    private final int noOfEdges;
+    private Schedule schedule = Schedule.SYNCHRONOUS;
+    private double damping = 0.0;
+    private double threshold = 1e-6;
+    private int maxIterations = 100;
+
+    /**
+     * Constructor specifying the network, synchronous updates run on the common pool.
+     *
+     * @param network bayesian network
+     */
+    public LoopyBeliefPropagation(BayesianNetwork network) {
+        this(network, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructor specifying the network and the pool to run synchronous updates on.
+     *
+     * @param network bayesian network
+     * @param pool    fork join pool
+     */
+    public LoopyBeliefPropagation(BayesianNetwork network, ForkJoinPool pool) {
+        this.network = network;
+        this.pool = pool;
+        int n = network.getNodeCount();
+        factorVariables = new int[n][];
+        tables = new double[n][];
+        edgeBase = new int[n];
+        int edges = 0;
+        for (int f = 0; f < n; f++) {
+            Node node = network.getNode(f);
+            factorVariables[f] = node.getCpt().getOrderedVariables().stream().mapToInt(Node::getId).toArray();
+            tables[f] = node.getCpt().getValues();
+            edgeBase[f] = edges;
+            edges += factorVariables[f].length;
+        }
+        noOfEdges = edges;
+        edgeFactor = new int[noOfEdges];
+        List<List<Integer>> edgesOfVariables = new ArrayList<>();
+        for (int v = 0; v < n; v++) {
+            edgesOfVariables.add(new ArrayList<>());
+        }
+        for (int f = 0; f < n; f++) {
+            for (int k = 0; k < factorVariables[f].length; k++) {
+                edgeFactor[edgeBase[f] + k] = f;
+                edgesOfVariables.get(factorVariables[f][k]).add(edgeBase[f] + k);
+            }
+        }
+        variableEdges = new int[n][];
+        for (int v = 0; v < n; v++) {
+            variableEdges[v] = edgesOfVariables.get(v).stream().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    /**
+     * Sets the order in which messages are updated.
+     *
+     * @param schedule message schedule
+     */
+    public void setSchedule(Schedule schedule) {
+        this.schedule = schedule;
+    }
+
+    /**
+     * Sets the damping, the weight of the previous message in every updated message.
+     *
+     * @param damping damping between 0 and 1
+     */
+    public void setDamping(double damping) {
+        this.damping = damping;
+    }
+
+    /**
+     * Sets the largest message change at which propagation is considered converged.
+     *
+     * @param threshold convergence threshold
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Sets the maximum number of iterations, for the residual schedule an iteration is one update per factor.
+     *
+     * @param maxIterations maximum number of iterations
+     */
+    public void setMaxIterations(int maxIterations) {
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Approximates the probability of a query.
+     *
+     * @param queryInfo query info object containing the query variable, its value and a list of evidence
+     * @return query result with the probability
+     */
+    @Override
+    public QueryResult query(QueryInfo queryInfo) {
+        Node queryNode = network.getNode(queryInfo.getLabel());
+        if (queryNode == null) {
+            return new QueryResult(0.0, new String[0]);
+        }
+        double probability = getMarginals(queryInfo.getEvidences()).getMarginals().get(queryNode.getLabel());
+        return new QueryResult(queryInfo.getQueryValue() ? probability : 1 - probability, new String[0]);
+    }
+
+    /**
+     * Approximates the probability of every random variable being true given a set of evidence.
+     *
+     * @param evidences observed random variables and their values
+     * @return marginals keyed by random variable label, and the convergence of propagation
+     */
+    public MarginalsResult getMarginals(List<QueryInfo> evidences) {
+        int n = factorVariables.length;
+        // evidence is a unary factor on the random variable, 1 for the observed value and 0 for the other
+        double[] evidenceFactors = new double[2 * n];
+        Arrays.fill(evidenceFactors, 1.0);
+        for (QueryInfo evidence : evidences) {
+            Node node = network.getNode(evidence.getLabel());
+            if (node != null) {
+                evidenceFactors[2 * node.getId() + (evidence.getQueryValue() ? 0 : 1)] = 0.0;
+            }
+        }
+        Messages messages = new Messages(evidenceFactors, noOfEdges);
+        for (int v = 0; v < n; v++) {
+            updateVariable(v, messages);
+        }
+        if (schedule == Schedule.SYNCHRONOUS) {
+            propagateSynchronously(messages);
+        } else {
+            propagateByResidual(messages);
+        }
+
+        Map<String, Double> marginals = new LinkedHashMap<>();
+        for (int v = 0; v < n; v++) {
+            double falseBelief = evidenceFactors[2 * v];
+            double trueBelief = evidenceFactors[2 * v + 1];
+            for (int e : variableEdges[v]) {
+                falseBelief *= messages.factorToVariable[2 * e];
+                trueBelief *= messages.factorToVariable[2 * e + 1];
+            }
+            double total = falseBelief + trueBelief;
+            marginals.put(network.getNode(v).getLabel(), total > 0 ? trueBelief / total : 0.5);
+        }
+        return new MarginalsResult(marginals, messages.noOfIterations, messages.converged);
+    }
+
+    /**
+     * Updates every factor in parallel from the messages of the previous iteration, then every random variable.
+     * Factors write to a second buffer, which becomes the current one once every factor is updated.
+     *
+     * @param messages messages to update
+     */
+    private void propagateSynchronously(Messages messages) {
+        int n = factorVariables.length;
+        double[] changes = new double[n];
+        while (messages.noOfIterations < maxIterations && !messages.converged) {
+            double[] current = messages.factorToVariable;
+            double[] next = messages.nextFactorToVariable;
+            pool.submit(() -> IntStream.range(0, n).parallel()
+                    .forEach(f -> changes[f] = updateFactor(f, messages.variableToFactor, current, next))).join();
+            messages.factorToVariable = next;
+            messages.nextFactorToVariable = current;
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(v -> updateVariable(v, messages))).join();
+            messages.noOfIterations++;
+            messages.converged = Arrays.stream(changes).max().orElse(0.0) < threshold;
+        }
+    }
+
+    /**
+     * Repeatedly updates the factor whose messages would change the most, then the random variables of the factor,
+     * and recomputes the pending messages of the factors that depend on them.
+     *
+     * @param messages messages to update
+     */
+    private void propagateByResidual(Messages messages) {
+        int n = factorVariables.length;
+        // pending messages of every factor, and the largest change they would make
+        double[] pending = messages.nextFactorToVariable;
+        double[] residuals = new double[n];
+        long[] lastUpdate = new long[n];
+        // the heap pops the smallest key, and the bits of non negative doubles are ordered like the doubles
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        for (int f = 0; f < n; f++) {
+            residuals[f] = updateFactor(f, messages.variableToFactor, messages.factorToVariable, pending);
+            heap.put(f, Long.MAX_VALUE - Double.doubleToLongBits(residuals[f]));
+        }
+        long maxUpdates = (long) maxIterations * n;
+        long noOfUpdates = 0;
+        while (!heap.isEmpty() && noOfUpdates < maxUpdates) {
+            int f = heap.poll();
+            if (residuals[f] < threshold) {
+                // every other factor has a smaller residual
+                messages.converged = true;
+                break;
+            }
+            int base = 2 * edgeBase[f];
+            System.arraycopy(pending, base, messages.factorToVariable, base, 2 * factorVariables[f].length);
+            noOfUpdates++;
+            // every factor sharing a random variable with the updated factor is recomputed once
+            for (int v : factorVariables[f]) {
+                updateVariable(v, messages);
+            }
+            for (int v : factorVariables[f]) {
+                for (int e : variableEdges[v]) {
+                    int g = edgeFactor[e];
+                    if (lastUpdate[g] != noOfUpdates) {
+                        lastUpdate[g] = noOfUpdates;
+                        residuals[g] = updateFactor(g, messages.variableToFactor, messages.factorToVariable, pending);
+                        heap.put(g, Long.MAX_VALUE - Double.doubleToLongBits(residuals[g]));
+                    }
+                }
+            }
+        }
+        if (heap.isEmpty()) {
+            messages.converged = true;
+        }
+        messages.noOfIterations = (int) ((noOfUpdates + n - 1) / n);
+    }
+
+    /**
+     * Computes the messages from a factor to each of its random variables in one pass over the table.
+     * The message to a random variable is the table multiplied by the messages from every other random variable
+     * and summed over them, so products of the messages before and after each position are used.
+     *
+     * @param f                factor id
+     * @param variableToFactor messages from the random variables
+     * @param current          current messages from the factors, used for damping
+     * @param next             buffer to write the new messages from the factor to
+     * @return largest change of a message
+     */
+    private double updateFactor(int f, double[] variableToFactor, double[] current, double[] next) {
+        int[] variables = factorVariables[f];
+        double[] table = tables[f];
+        int length = variables.length;
+        int base = 2 * edgeBase[f];
+        Arrays.fill(next, base, base + 2 * length, 0.0);
+        double[] before = new double[length + 1];
+        before[0] = 1.0;
+        for (int i = 0; i < table.length; i++) {
+            if (table[i] == 0) {
+                continue;
+            }
+            // the first random variable is the most significant bit of the index
+            for (int k = 0; k < length; k++) {
+                int bit = (i >> (length - 1 - k)) & 1;
+                before[k + 1] = before[k] * variableToFactor[base + 2 * k + bit];
+            }
+            double after = table[i];
+            for (int k = length - 1; k >= 0; k--) {
+                int bit = (i >> (length - 1 - k)) & 1;
+                next[base + 2 * k + bit] += before[k] * after;
+                after *= variableToFactor[base + 2 * k + bit];
+            }
+        }
+        double change = 0.0;
+        for (int k = 0; k < length; k++) {
+            int index = base + 2 * k;
+            double total = next[index] + next[index + 1];
+            double falseMessage = total > 0 ? next[index] / total : 0.5;
+            falseMessage = (1 - damping) * falseMessage + damping * current[index];
+            next[index] = falseMessage;
+            next[index + 1] = 1 - falseMessage;
+            change = Math.max(change, Math.abs(falseMessage - current[index]));
+        }
+        return change;
+    }
+
+    /**
+     * Computes the messages from a random variable to each of its factors, the evidence multiplied by the
+     * messages from every other factor.
+     *
+     * @param v        random variable id
+     * @param messages messages to update
+     */
+    private void updateVariable(int v, Messages messages) {
+        int[] edges = variableEdges[v];
+        double[] factorToVariable = messages.factorToVariable;
+        double[] variableToFactor = messages.variableToFactor;
+        // products of the messages before each edge are written first, then multiplied by the ones after
+        double falseBefore = messages.evidenceFactors[2 * v];
+        double trueBefore = messages.evidenceFactors[2 * v + 1];
+        for (int e : edges) {
+            variableToFactor[2 * e] = falseBefore;
+            variableToFactor[2 * e + 1] = trueBefore;
+            falseBefore *= factorToVariable[2 * e];
+            trueBefore *= factorToVariable[2 * e + 1];
+        }
+        double falseAfter = 1.0;
+        double trueAfter = 1.0;
+        for (int j = edges.length - 1; j >= 0; j--) {
+            int e = edges[j];
+            double falseMessage = variableToFactor[2 * e] * falseAfter;
+            double trueMessage = variableToFactor[2 * e + 1] * trueAfter;
+            double total = falseMessage + trueMessage;
+            variableToFactor[2 * e] = total > 0 ? falseMessage / total : 0.5;
+            variableToFactor[2 * e + 1] = total > 0 ? trueMessage / total : 0.5;
+            falseAfter *= factorToVariable[2 * e];
+            trueAfter *= factorToVariable[2 * e + 1];
+        }
+    }
+
+    /**
+     * Messages Class.
+     * Messages of one propagation, as false and true pairs indexed by edge.
+     */
+    private static final class Messages {
+        private final double[] evidenceFactors;
+        private final double[] variableToFactor;
+        private double[] factorToVariable;
+        private double[] nextFactorToVariable;
+        private int noOfIterations;
+        private boolean converged;
+
+        private Messages(double[] evidenceFactors, int noOfEdges) {
+            this.evidenceFactors = evidenceFactors;
+            this.variableToFactor = new double[2 * noOfEdges];
+            this.factorToVariable = new double[2 * noOfEdges];
+            this.nextFactorToVariable = new double[2 * noOfEdges];
+            Arrays.fill(factorToVariable, 0.5);
+        }
+    }
+}
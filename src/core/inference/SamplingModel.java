@@ -0,0 +1,220 @@
+package core.inference;
+
+import core.BayesianNetwork;
+import core.Factor;
+import core.Node;
+import core.query.QueryInfo;
+
+import java.util.*;
+
+/**
+ * Sampling Model Class.
+ * This class is a copy of a bayesian network as primitive arrays for the sampling algorithms.
+ * Random variables are identified by their node id, and for every random variable the probability of it being true
+ * is stored for each configuration of its parents, where the configuration is the binary representation
+ * of the parent values with the first parent as the most significant bit, like the cpt layout.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class SamplingModel {
+    private final BayesianNetwork network;
+    private final int[] topologicalOrder;
+    private final int[][] parents;
+    private final int[][] children;
+    private final double[][] trueProbabilities;
+
+    /**
+     * Constructor specifying the network to copy, every node must have a cpt.
+     *
+     * @param network bayesian network
+     */
+    public SamplingModel(BayesianNetwork network) {
+        this.network = network;
+        int n = network.getNodeCount();
+        parents = new int[n][];
+        children = new int[n][];
+        trueProbabilities = new double[n][];
+        for (int id = 0; id < n; id++) {
+            Node node = network.getNode(id);
+            parents[id] = node.getParents().stream().mapToInt(Node::getId).toArray();
+            children[id] = node.getChildren().stream().mapToInt(Node::getId).toArray();
+            // the node is the last variable of its cpt, so true values are at every odd index
+            Factor cpt = node.getCpt();
+            trueProbabilities[id] = new double[cpt.getTableSize() / 2];
+            for (int configuration = 0; configuration < trueProbabilities[id].length; configuration++) {
+                trueProbabilities[id][configuration] = cpt.getValue(2 * configuration + 1);
+            }
+        }
+        topologicalOrder = sort(n);
+    }
+
+    /**
+     * Sorts the random variables so that parents always come before their children.
+     *
+     * @param n number of random variables
+     * @return node ids in topological order
+     */
+    private int[] sort(int n) {
+        int[] order = new int[n];
+        int[] noOfUnsortedParents = new int[n];
+        int head = 0;
+        int tail = 0;
+        for (int id = 0; id < n; id++) {
+            noOfUnsortedParents[id] = parents[id].length;
+            if (parents[id].length == 0) {
+                order[tail++] = id;
+            }
+        }
+        while (head < tail) {
+            for (int child : children[order[head++]]) {
+                if (--noOfUnsortedParents[child] == 0) {
+                    order[tail++] = child;
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Gets the number of random variables.
+     *
+     * @return number of random variables
+     */
+    public int size() {
+        return parents.length;
+    }
+
+    /**
+     * Gets the node ids in topological order.
+     *
+     * @return node ids, parents always come before their children
+     */
+    public int[] getTopologicalOrder() {
+        return topologicalOrder;
+    }
+
+    /**
+     * Gets the ancestors of some random variables, including them, in topological order.
+     * Random variables that are not ancestors are barren and never need to be sampled.
+     *
+     * @param ids node ids
+     * @return node ids in topological order
+     */
+    public int[] getAncestralOrder(int... ids) {
+        boolean[] ancestral = new boolean[size()];
+        Deque<Integer> toVisit = new ArrayDeque<>();
+        for (int id : ids) {
+            if (!ancestral[id]) {
+                ancestral[id] = true;
+                toVisit.add(id);
+            }
+        }
+        while (!toVisit.isEmpty()) {
+            for (int parent : parents[toVisit.poll()]) {
+                if (!ancestral[parent]) {
+                    ancestral[parent] = true;
+                    toVisit.add(parent);
+                }
+            }
+        }
+        return Arrays.stream(topologicalOrder).filter(id -> ancestral[id]).toArray();
+    }
+
+    /**
+     * Gets the parent ids of a random variable, in cpt order.
+     *
+     * @param id node id
+     * @return parent ids
+     */
+    public int[] getParents(int id) {
+        return parents[id];
+    }
+
+    /**
+     * Gets the child ids of a random variable.
+     *
+     * @param id node id
+     * @return child ids
+     */
+    public int[] getChildren(int id) {
+        return children[id];
+    }
+
+    /**
+     * Gets the probability of a random variable being true for each configuration of its parents.
+     *
+     * @param id node id
+     * @return probabilities indexed by parent configuration
+     */
+    public double[] getTrueProbabilities(int id) {
+        return trueProbabilities[id];
+    }
+
+    /**
+     * Gets the configuration of the parents of a random variable in a sample.
+     *
+     * @param id     node id
+     * @param values sample values indexed by node id
+     * @return parent configuration
+     */
+    public int getParentConfiguration(int id, boolean[] values) {
+        int configuration = 0;
+        for (int parent : parents[id]) {
+            configuration = configuration << 1 | (values[parent] ? 1 : 0);
+        }
+        return configuration;
+    }
+
+    /**
+     * Gets the probability of a random variable having its value in a sample, given the values of its parents.
+     *
+     * @param id     node id
+     * @param values sample values indexed by node id
+     * @return conditional probability
+     */
+    public double getProbability(int id, boolean[] values) {
+        double probability = trueProbabilities[id][getParentConfiguration(id, values)];
+        return values[id] ? probability : 1 - probability;
+    }
+
+    /**
+     * Gets the id of a random variable.
+     *
+     * @param label random variable label
+     * @return node id, or -1 if the random variable is not in the network
+     */
+    public int indexOf(String label) {
+        Node node = network.getNode(label);
+        return node == null ? -1 : node.getId();
+    }
+
+    /**
+     * Gets the label of a random variable.
+     *
+     * @param id node id
+     * @return random variable label
+     */
+    public String getLabel(int id) {
+        return network.getNode(id).getLabel();
+    }
+
+    /**
+     * Gets the observed value of every random variable.
+     *
+     * @param evidences observed random variables and their values
+     * @return 1 if observed true, 0 if observed false, or -1 if not observed, indexed by node id
+     */
+    public int[] getEvidence(List<QueryInfo> evidences) {
+        int[] evidence = new int[size()];
+        Arrays.fill(evidence, -1);
+        for (QueryInfo queryInfo : evidences) {
+            int id = indexOf(queryInfo.getLabel());
+            if (id >= 0) {
+                evidence[id] = queryInfo.getQueryValue() ? 1 : 0;
+            }
+        }
+        return evidence;
+    }
+}
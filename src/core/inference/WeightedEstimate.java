@@ -0,0 +1,127 @@
+package core.inference;
+
+import core.query.ApproximateQueryResult;
+
+/**
+ * Weighted Estimate Class.
+ * This class accumulates weighted samples of a random variable and estimates the probability of it being true
+ * as the weighted fraction of true samples, with a standard error from the delta method.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+final class WeightedEstimate {
+    private long noOfSamples;
+    private double sumOfWeights;
+    private double sumOfTrueWeights;
+    private double sumOfSquaredWeights;
+    private double sumOfSquaredTrueWeights;
+
+    /**
+     * Adds a weighted sample.
+     *
+     * @param weight sample weight
+     * @param value  sampled value of the random variable
+     */
+    void add(double weight, boolean value) {
+        noOfSamples++;
+        double squaredWeight = weight * weight;
+        sumOfWeights += weight;
+        sumOfSquaredWeights += squaredWeight;
+        if (value) {
+            sumOfTrueWeights += weight;
+            sumOfSquaredTrueWeights += squaredWeight;
+        }
+    }
+
+    /**
+     * Adds the samples of another estimate.
+     *
+     * @param other estimate to add
+     */
+    void add(WeightedEstimate other) {
+        noOfSamples += other.noOfSamples;
+        sumOfWeights += other.sumOfWeights;
+        sumOfTrueWeights += other.sumOfTrueWeights;
+        sumOfSquaredWeights += other.sumOfSquaredWeights;
+        sumOfSquaredTrueWeights += other.sumOfSquaredTrueWeights;
+    }
+
+    /**
+     * Gets the number of samples added.
+     *
+     * @return number of samples
+     */
+    long getNoOfSamples() {
+        return noOfSamples;
+    }
+
+    /**
+     * Gets the estimated probability of the random variable being true.
+     *
+     * @return estimated probability, or 0 if every sample has no weight
+     */
+    double getProbability() {
+        return sumOfWeights > 0 ? sumOfTrueWeights / sumOfWeights : 0.0;
+    }
+
+    /**
+     * Gets the standard error of the estimated probability.
+     *
+     * @return standard error, or infinity if every sample has no weight
+     */
+    double getStandardError() {
+        if (sumOfWeights <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double p = getProbability();
+        // sum of w^2 (y - p)^2, where y is 1 for true samples
+        double variance = ((1 - 2 * p) * sumOfSquaredTrueWeights + p * p * sumOfSquaredWeights) / (sumOfWeights * sumOfWeights);
+        return Math.sqrt(Math.max(variance, 0.0));
+    }
+
+    /**
+     * Gets the mean weight of the samples, which estimates the probability of the evidence when samples are
+     * weighted by the ratio of the network probability to the sampling probability.
+     *
+     * @return mean weight
+     */
+    double getMeanWeight() {
+        return noOfSamples > 0 ? sumOfWeights / noOfSamples : 0.0;
+    }
+
+    /**
+     * Gets the standard error of the mean weight.
+     *
+     * @return standard error, or infinity if there are fewer than two samples
+     */
+    double getMeanWeightStandardError() {
+        if (noOfSamples < 2) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double mean = getMeanWeight();
+        double variance = (sumOfSquaredWeights / noOfSamples - mean * mean) * noOfSamples / (noOfSamples - 1);
+        return Math.sqrt(Math.max(variance, 0.0) / noOfSamples);
+    }
+
+    /**
+     * Gets the effective sample size, the number of unweighted samples with the same variance.
+     *
+     * @return effective sample size
+     */
+    double getEffectiveSampleSize() {
+        return sumOfSquaredWeights > 0 ? sumOfWeights * sumOfWeights / sumOfSquaredWeights : 0.0;
+    }
+
+    /**
+     * Creates the query result for a value of the random variable.
+     *
+     * @param value queried value
+     * @return estimate with its standard error
+     */
+    ApproximateQueryResult toResult(boolean value) {
+        double probability = value ? getProbability() : 1 - getProbability();
+        return new ApproximateQueryResult(probability, getStandardError(), noOfSamples, getEffectiveSampleSize());
+    }
+}
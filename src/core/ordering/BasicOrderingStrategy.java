@@ -21,4 +21,13 @@ public abstract class BasicOrderingStrategy {
      */
     public abstract Set<String> getOrder(QueryInfo queryInfo);
 
+    /**
+     * Gets a key identifying the ordering strategy, used when caching query results.
+     *
+     * @return ordering strategy key
+     */
+    public String getCacheKey() {
+        return getClass().getSimpleName();
+    }
+
 }
@@ -0,0 +1,180 @@
+package core.ordering;
+
+import core.EliminationGraph;
+import core.Node;
+import core.query.QueryInfo;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Caching Ordering Class.
+ * This class remembers the orders generated by an automatic ordering strategy. Automatic orders only depend on
+ * the moral graph, the query random variable and which random variables are observed, so the order and its
+ * estimated cost are cached per moral graph, version of that graph and signature of the query, keeping the most
+ * recently used entries up to a maximum. Orders of several moral graphs, for example of a bayesian network and of
+ * its compiled snapshot, can be cached at the same time.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class CachingOrderingStrategy extends IntermediateOrderingStrategy {
+    private final IntermediateOrderingStrategy strategy;
+    private final int maxEntries;
+    private final Map<CacheKey, CachedOrder> orders;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor specifying the strategy to cache and the maximum number of cached orders.
+     *
+     * @param strategy   automatic ordering strategy
+     * @param maxEntries maximum number of cached orders
+     */
+    public CachingOrderingStrategy(IntermediateOrderingStrategy strategy, int maxEntries) {
+        this.strategy = strategy;
+        this.maxEntries = maxEntries;
+        // access ordering keeps the least recently used order first
+        this.orders = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CachedOrder> eldest) {
+                return size() > CachingOrderingStrategy.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets the order from the cache, generating it with the cached strategy if the query signature is new.
+     *
+     * @param queryInfo  query information
+     * @param nodesList  nodes to order
+     * @param moralGraph moral graph of the nodes
+     * @param random     random generator used to break ties
+     * @return set of labels
+     */
+    @Override
+    public Set<String> getOrder(QueryInfo queryInfo, List<Node> nodesList, EliminationGraph moralGraph, Random random) {
+        return getCachedOrder(queryInfo, nodesList, moralGraph, random).order;
+    }
+
+    /**
+     * Gets the estimated cost of the order of a query, as the total number of entries of the factors it creates.
+     *
+     * @param queryInfo query information
+     * @return estimated cost of the order
+     */
+    public double getEstimatedCost(QueryInfo queryInfo) {
+        return getCachedOrder(queryInfo, getNodesList(), getMoralGraph(), getRandom()).estimatedCost;
+    }
+
+    /**
+     * Gets the cached order for the signature of a query.
+     *
+     * @param queryInfo  query information
+     * @param nodesList  nodes to order
+     * @param moralGraph moral graph of the nodes
+     * @param random     random generator used to break ties
+     * @return cached order
+     */
+    private synchronized CachedOrder getCachedOrder(QueryInfo queryInfo, List<Node> nodesList, EliminationGraph moralGraph, Random random) {
+        // cached orders are only valid for the moral graph and the version of it they were generated from
+        CacheKey key = new CacheKey(moralGraph, moralGraph.getVersion(), getSignature(queryInfo));
+        CachedOrder cachedOrder = orders.get(key);
+        if (cachedOrder == null) {
+            misses++;
+            Set<String> order = Collections.unmodifiableSet(strategy.getOrder(queryInfo, nodesList, moralGraph, random));
+            cachedOrder = new CachedOrder(order, moralGraph.getEliminationCost(order));
+            orders.put(key, cachedOrder);
+        } else {
+            hits++;
+        }
+        return cachedOrder;
+    }
+
+    /**
+     * Generates the signature of a query: its random variable and the sorted observed random variables.
+     *
+     * @param queryInfo query information
+     * @return query signature
+     */
+    private static String getSignature(QueryInfo queryInfo) {
+        return queryInfo.getLabel().toLowerCase() + "|" + queryInfo.getEvidences().stream()
+                .map(evidence -> evidence.getLabel().toLowerCase())
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Gets a key identifying the ordering strategy, which is the key of the cached strategy.
+     *
+     * @return ordering strategy key
+     */
+    @Override
+    public String getCacheKey() {
+        return strategy.getCacheKey();
+    }
+
+    /**
+     * Gets the number of orders answered from the cache.
+     *
+     * @return number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of orders that had to be generated.
+     *
+     * @return number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Key of a cached order: the moral graph, compared by identity, its version and the query signature.
+     */
+    private static final class CacheKey {
+        private final EliminationGraph moralGraph;
+        private final long version;
+        private final String signature;
+
+        private CacheKey(EliminationGraph moralGraph, long version, String signature) {
+            this.moralGraph = moralGraph;
+            this.version = version;
+            this.signature = signature;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) o;
+            return moralGraph == other.moralGraph && version == other.version && signature.equals(other.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(moralGraph), version, signature);
+        }
+    }
+
+    /**
+     * Cached order of a query signature and its estimated cost.
+     */
+    private static final class CachedOrder {
+        private final Set<String> order;
+        private final double estimatedCost;
+
+        private CachedOrder(Set<String> order, double estimatedCost) {
+            this.order = order;
+            this.estimatedCost = estimatedCost;
+        }
+    }
+}
@@ -1,11 +1,10 @@
 package core.ordering;
 
-import core.InducedGraph;
+import core.EliminationGraph;
 import core.Node;
 import core.query.QueryInfo;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Greedy Search Ordering Class.
@@ -18,52 +17,57 @@ import java.util.stream.Collectors;
 public class GreedyOrderingStrategy extends IntermediateOrderingStrategy {
     /**
      * Gets the order based on the ordering algorithm.
+     * Each selected label is eliminated from a copy of the moral graph, connecting its neighbours.
      *
-     * @param queryInfo query information
+     * @param queryInfo  query information
+     * @param nodesList  nodes to order
+     * @param moralGraph moral graph of the nodes
+     * @param random     random generator used to break ties
      * @return set of labels
      */
     @Override
-    public Set<String> getOrder(QueryInfo queryInfo) {
-        InducedGraph graph = getInducedGraph();
-        Node queryNode = getNodesList().stream().filter(n -> n.getLabel().equalsIgnoreCase(queryInfo.getLabel())).findFirst().orElse(null);
-        if (queryNode != null) {
-            Set<String> unmarkedList = getNodesList().stream().map(Node::getLabel).collect(Collectors.toSet());
-            Set<String> markedList = new HashSet<>();
+    public Set<String> getOrder(QueryInfo queryInfo, List<Node> nodesList, EliminationGraph moralGraph, Random random) {
+        int queryIndex = moralGraph.indexOf(queryInfo.getLabel());
+        if (queryIndex >= 0) {
+            EliminationGraph graph = moralGraph.copy();
+            // number of marked neighbours of every vertex, updated as vertices are marked
+            int[] markedNeighbours = new int[graph.size()];
             List<String> order = new ArrayList<>();
 
-            for (int i = 0; i < getNodesList().size(); i++) {
-                String label = getLabelWithMinimumNumberOfMarkedNeighbours(graph, markedList, unmarkedList);
-                order.add(label);
-                unmarkedList.remove(label);
-                markedList.add(label);
-                graph = graph.connectNeighbors(label);
+            for (int i = 0; i < graph.size(); i++) {
+                int vertex = getVertexWithMinimumNumberOfMarkedNeighbours(graph, markedNeighbours, i == 0, random);
+                order.add(graph.getLabel(vertex));
+                for (int neighbour : graph.getNeighbours(vertex)) {
+                    markedNeighbours[neighbour]++;
+                }
+                graph.eliminate(vertex);
             }
-            order.remove(queryNode.getLabel());
+            order.remove(graph.getLabel(queryIndex));
             return new LinkedHashSet<>(order);
         }
         return Set.of();
     }
 
     /**
-     * Gets the label with the lowest number of marked neighbours.
+     * Gets the unmarked vertex with the lowest number of marked neighbours.
      *
-     * @param graph      induced graph with connected labels
-     * @param markedList marked labels
-     * @param labels     searchable labels
-     * @return label with min number of marked neighbours
+     * @param graph            elimination graph with connected labels
+     * @param markedNeighbours number of marked neighbours of every vertex
+     * @param first            True if no vertex has been marked yet
+     * @param random           random generator used to break ties
+     * @return vertex with min number of marked neighbours
      */
-    private String getLabelWithMinimumNumberOfMarkedNeighbours(InducedGraph graph, Set<String> markedList, Set<String> labels) {
-        String y = null;
-        int maxNoOfNeighbours = Integer.MAX_VALUE;
-        List<String> tmpLabels = new ArrayList<>(labels);
-        if (markedList.isEmpty()) {
-            Collections.shuffle(tmpLabels,getRandom());
+    private int getVertexWithMinimumNumberOfMarkedNeighbours(EliminationGraph graph, int[] markedNeighbours, boolean first, Random random) {
+        if (first) {
+            // every vertex has no marked neighbours, so start at random
+            return random.nextInt(graph.size());
         }
-        for (String label : tmpLabels) {
-            int unmarkedLabelMarkedNeighboursSize = getNumberOfMarkedNeighbours(graph, markedList, label);
-            if (unmarkedLabelMarkedNeighboursSize < maxNoOfNeighbours) {
-                maxNoOfNeighbours = unmarkedLabelMarkedNeighboursSize;
-                y = label;
+        int y = -1;
+        int minNoOfNeighbours = Integer.MAX_VALUE;
+        for (int vertex = 0; vertex < graph.size(); vertex++) {
+            if (!graph.isEliminated(vertex) && markedNeighbours[vertex] < minNoOfNeighbours) {
+                minNoOfNeighbours = markedNeighbours[vertex];
+                y = vertex;
             }
         }
         return y;
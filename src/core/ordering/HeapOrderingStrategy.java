@@ -0,0 +1,111 @@
+package core.ordering;
+
+import core.EliminationGraph;
+import core.Node;
+import core.query.QueryInfo;
+
+import java.util.*;
+
+/**
+ * Heap Ordering Class.
+ * This class is the base class for greedy elimination heuristics that always eliminate the vertex with the lowest score.
+ * Scores are kept in an indexed heap, and after each elimination only the vertices whose score may have changed are
+ * scored again, instead of rescanning every vertex.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public abstract class HeapOrderingStrategy extends IntermediateOrderingStrategy {
+
+    /**
+     * Scores a vertex of the elimination graph, the vertex with the lowest score is eliminated first.
+     *
+     * @param graph  elimination graph
+     * @param vertex vertex index
+     * @return score of the vertex
+     */
+    protected abstract long score(EliminationGraph graph, int vertex);
+
+    /**
+     * Checks if the score of a vertex only depends on its own neighbours. If it does, only the neighbours of an
+     * eliminated vertex need a new score, otherwise the neighbours of those neighbours do too.
+     *
+     * @return True if scores only change when a neighbour is added or removed
+     */
+    protected boolean isScoreLocal() {
+        return false;
+    }
+
+    /**
+     * Gets the order based on the ordering algorithm.
+     *
+     * @param queryInfo  query information
+     * @param nodesList  nodes to order
+     * @param moralGraph moral graph of the nodes
+     * @param random     random generator, unused as ties are broken by network order
+     * @return set of labels
+     */
+    @Override
+    public Set<String> getOrder(QueryInfo queryInfo, List<Node> nodesList, EliminationGraph moralGraph, Random random) {
+        int queryIndex = moralGraph.indexOf(queryInfo.getLabel());
+        if (queryIndex >= 0) {
+            Set<String> order = new LinkedHashSet<>();
+            for (int vertex : getEliminationOrder(moralGraph)) {
+                if (vertex != queryIndex) {
+                    order.add(moralGraph.getLabel(vertex));
+                }
+            }
+            return order;
+        }
+        return Set.of();
+    }
+
+    /**
+     * Gets the order in which every vertex of the graph is eliminated.
+     *
+     * @param moralGraph moral graph, which is not modified
+     * @return vertex indices in elimination order
+     */
+    public int[] getEliminationOrder(EliminationGraph moralGraph) {
+        EliminationGraph graph = moralGraph.copy();
+        IndexedMinHeap heap = new IndexedMinHeap(graph.size());
+        for (int vertex = 0; vertex < graph.size(); vertex++) {
+            heap.put(vertex, score(graph, vertex));
+        }
+        int[] order = new int[graph.size()];
+        // marks the vertices already scored again in the current step
+        int[] rescored = new int[graph.size()];
+        for (int step = 1; step <= order.length; step++) {
+            int vertex = heap.poll();
+            order[step - 1] = vertex;
+            int[] neighbours = graph.getNeighbours(vertex);
+            graph.eliminate(vertex);
+            for (int neighbour : neighbours) {
+                rescore(graph, heap, rescored, step, neighbour);
+                if (!isScoreLocal()) {
+                    for (int secondNeighbour : graph.getNeighbours(neighbour)) {
+                        rescore(graph, heap, rescored, step, secondNeighbour);
+                    }
+                }
+            }
+        }
+        return order;
+    }
+
+    /**
+     * Updates the score of a vertex, at most once per elimination step.
+     *
+     * @param graph    elimination graph
+     * @param heap     heap of vertex scores
+     * @param rescored step in which each vertex was last scored
+     * @param step     current step
+     * @param vertex   vertex index
+     */
+    private void rescore(EliminationGraph graph, IndexedMinHeap heap, int[] rescored, int step, int vertex) {
+        if (rescored[vertex] != step && heap.contains(vertex)) {
+            rescored[vertex] = step;
+            heap.put(vertex, score(graph, vertex));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package core.ordering;
+
+import java.util.Arrays;
+
+/**
+ * Indexed Min Heap Class.
+ * This class is a binary heap of the integers 0 to n-1 ordered by a key, where the key of any integer in the heap
+ * can be changed in logarithmic time. Integers with equal keys are ordered by their value, so results are deterministic.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class IndexedMinHeap {
+    private final int[] heap;
+    // position of every item in the heap, or -1 if the item is not in the heap
+    private final int[] positions;
+    private final long[] keys;
+    private int size;
+
+    /**
+     * Constructor specifying the number of items.
+     *
+     * @param capacity number of items, the heap holds the integers 0 to capacity-1
+     */
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        positions = new int[capacity];
+        keys = new long[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * Checks if the heap is empty.
+     *
+     * @return True if the heap is empty
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Checks if an item is in the heap.
+     *
+     * @param item item
+     * @return True if the item is in the heap
+     */
+    public boolean contains(int item) {
+        return positions[item] >= 0;
+    }
+
+    /**
+     * Adds an item to the heap, or changes its key if it is already in the heap.
+     *
+     * @param item item
+     * @param key  key of the item
+     */
+    public void put(int item, long key) {
+        if (contains(item)) {
+            long oldKey = keys[item];
+            keys[item] = key;
+            if (key < oldKey) {
+                siftUp(positions[item]);
+            } else {
+                siftDown(positions[item]);
+            }
+        } else {
+            keys[item] = key;
+            heap[size] = item;
+            positions[item] = size;
+            siftUp(size++);
+        }
+    }
+
+    /**
+     * Removes the item with the smallest key.
+     *
+     * @return item with the smallest key
+     */
+    public int poll() {
+        int min = heap[0];
+        swap(0, --size);
+        positions[min] = -1;
+        if (size > 0) {
+            siftDown(0);
+        }
+        return min;
+    }
+
+    /**
+     * Moves the item at a heap position up until its parent is smaller.
+     *
+     * @param position heap position
+     */
+    private void siftUp(int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!less(position, parent)) {
+                break;
+            }
+            swap(position, parent);
+            position = parent;
+        }
+    }
+
+    /**
+     * Moves the item at a heap position down until its children are larger.
+     *
+     * @param position heap position
+     */
+    private void siftDown(int position) {
+        while (true) {
+            int smallest = position;
+            int left = 2 * position + 1;
+            int right = left + 1;
+            if (left < size && less(left, smallest)) {
+                smallest = left;
+            }
+            if (right < size && less(right, smallest)) {
+                smallest = right;
+            }
+            if (smallest == position) {
+                break;
+            }
+            swap(position, smallest);
+            position = smallest;
+        }
+    }
+
+    /**
+     * Compares the items at two heap positions.
+     *
+     * @param a heap position
+     * @param b other heap position
+     * @return True if the item at a comes before the item at b
+     */
+    private boolean less(int a, int b) {
+        long keyA = keys[heap[a]];
+        long keyB = keys[heap[b]];
+        return keyA < keyB || (keyA == keyB && heap[a] < heap[b]);
+    }
+
+    /**
+     * Swaps the items at two heap positions.
+     *
+     * @param a heap position
+     * @param b other heap position
+     */
+    private void swap(int a, int b) {
+        int itemA = heap[a];
+        heap[a] = heap[b];
+        heap[b] = itemA;
+        positions[heap[a]] = a;
+        positions[heap[b]] = b;
+    }
+}
@@ -1,10 +1,9 @@
 package core.ordering;
 
-import core.InducedGraph;
-import core.InducedGraphNode;
+import core.EliminationGraph;
 import core.Node;
+import core.query.QueryInfo;
 
-import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
@@ -18,41 +17,47 @@ import java.util.Set;
  * @since 15/03/2022
  */
 public abstract class IntermediateOrderingStrategy extends BasicOrderingStrategy {
+    public static final int SEED = 123;
 
-    private InducedGraph inducedGraph;
+    private EliminationGraph moralGraph;
     private List<Node> nodesList;
-    public Random random = new Random(123);
+    public Random random = new Random(SEED);
 
     /**
-     * Gets the number of marked neighbours for an induced graph node.
-     * @param graph induced graph node
-     * @param markedList list of marked induced graph nodes as their labels
-     * @param label label to examine
-     * @return number of marked neighbours for the induced graph node
+     * Gets the order based on the ordering algorithm, using the nodes set on the strategy.
+     *
+     * @param queryInfo query information
+     * @return set of labels
      */
-    public int getNumberOfMarkedNeighbours(InducedGraph graph, Set<String> markedList, String label) {
-        // get induced node and count how many neighbours have their label in the marked list
-        int count = 0;
-        Set<InducedGraphNode> neighbours = graph.getInducedGraphNode(label).getNeighbours();
-        for (InducedGraphNode neighbour : neighbours) {
-            if (markedList.contains(neighbour.getLabel())) {
-                count++;
-            }
-        }
-        return count;
+    @Override
+    public Set<String> getOrder(QueryInfo queryInfo) {
+        return getOrder(queryInfo, getNodesList(), getMoralGraph(), getRandom());
     }
 
     /**
-     * Gets the induced graph
+     * Gets the order based on the ordering algorithm without using any state of the strategy,
+     * so it can be called from multiple threads as long as each thread provides its own random generator.
+     * The moral graph is never modified, strategies that eliminate vertices work on a copy.
+     *
+     * @param queryInfo  query information
+     * @param nodesList  nodes to order
+     * @param moralGraph moral graph of the nodes
+     * @param random     random generator used to break ties
+     * @return set of labels
+     */
+    public abstract Set<String> getOrder(QueryInfo queryInfo, List<Node> nodesList, EliminationGraph moralGraph, Random random);
+
+    /**
+     * Gets the moral graph of the nodes.
      *
-     * @return induced graph
+     * @return moral graph
      */
-    public InducedGraph getInducedGraph() {
-        return inducedGraph;
+    public EliminationGraph getMoralGraph() {
+        return moralGraph;
     }
 
     /**
-     * Gets nodes used to generate the induced graph.
+     * Gets nodes used to generate the moral graph.
      *
      * @return list of nodes
      */
@@ -61,15 +66,20 @@ public abstract class IntermediateOrderingStrategy extends BasicOrderingStrategy
     }
 
     /**
-     * Sets the list of nodes used to generate an induced graph.
+     * Sets the list of nodes used to generate the moral graph.
      *
      * @param nodesList list of nodes
      */
     public void setNodesList(List<Node> nodesList) {
         this.nodesList = nodesList;
-        this.inducedGraph = new InducedGraph(new HashSet<>(nodesList));
+        this.moralGraph = new EliminationGraph(nodesList);
     }
 
+    /**
+     * Gets the random generator shared by every order generated from the nodes set on the strategy.
+     *
+     * @return random generator
+     */
     public Random getRandom() {
         return random;
     }
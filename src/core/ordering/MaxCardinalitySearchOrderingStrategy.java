@@ -1,11 +1,10 @@
 package core.ordering;
 
-import core.InducedGraph;
+import core.EliminationGraph;
 import core.Node;
 import core.query.QueryInfo;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Maximum Cardinality Search Ordering Class.
@@ -17,26 +16,25 @@ import java.util.stream.Collectors;
  */
 public class MaxCardinalitySearchOrderingStrategy extends IntermediateOrderingStrategy {
     /**
-     * Gets the label with the highest number of marked neighbours.
+     * Gets the unmarked vertex with the highest number of marked neighbours.
      *
-     * @param graph      induced graph with connected labels
-     * @param markedList marked labels
-     * @param labels     searchable labels
-     * @return label with max number of marked neighbours
+     * @param marked           marked vertices
+     * @param markedNeighbours number of marked neighbours of every vertex
+     * @param first            True if no vertex has been marked yet
+     * @param random           random generator used to break ties
+     * @return vertex with max number of marked neighbours
      */
-    private String getLabelWithMaxNumberOfMarkedNeighbours(InducedGraph graph, Set<String> markedList, Set<String> labels) {
-        String y = null;
-        int maxNoOfNeighbours = Integer.MIN_VALUE;
-
-        List<String> tmpLabels = new ArrayList<>(labels);
-        if (markedList.isEmpty()) {
-            Collections.shuffle(tmpLabels, getRandom());
+    private int getVertexWithMaxNumberOfMarkedNeighbours(boolean[] marked, int[] markedNeighbours, boolean first, Random random) {
+        if (first) {
+            // every vertex has no marked neighbours, so start at random
+            return random.nextInt(marked.length);
         }
-        for (String label : tmpLabels) {
-            int unmarkedLabelMarkedNeighboursSize = getNumberOfMarkedNeighbours(graph, markedList, label);
-            if (unmarkedLabelMarkedNeighboursSize > maxNoOfNeighbours) {
-                maxNoOfNeighbours = unmarkedLabelMarkedNeighboursSize;
-                y = label;
+        int y = -1;
+        int maxNoOfNeighbours = Integer.MIN_VALUE;
+        for (int vertex = 0; vertex < marked.length; vertex++) {
+            if (!marked[vertex] && markedNeighbours[vertex] > maxNoOfNeighbours) {
+                maxNoOfNeighbours = markedNeighbours[vertex];
+                y = vertex;
             }
         }
         return y;
@@ -45,26 +43,32 @@ public class MaxCardinalitySearchOrderingStrategy extends IntermediateOrderingSt
     /**
      * Gets the order based on the ordering algorithm.
      *
-     * @param queryInfo query information
+     * @param queryInfo  query information
+     * @param nodesList  nodes to order
+     * @param moralGraph moral graph of the nodes
+     * @param random     random generator used to break ties
      * @return set of labels
      */
     @Override
-    public Set<String> getOrder(QueryInfo queryInfo) {
-        Node queryNode = getNodesList().stream().filter(n -> n.getLabel().equalsIgnoreCase(queryInfo.getLabel())).findFirst().orElse(null);
-        if (queryNode != null) {
-            Set<String> unmarkedList = getNodesList().stream().map(Node::getLabel).collect(Collectors.toSet());
-            Set<String> markedList = new HashSet<>();
+    public Set<String> getOrder(QueryInfo queryInfo, List<Node> nodesList, EliminationGraph moralGraph, Random random) {
+        int queryIndex = moralGraph.indexOf(queryInfo.getLabel());
+        if (queryIndex >= 0) {
+            boolean[] marked = new boolean[moralGraph.size()];
+            // number of marked neighbours of every vertex, updated as vertices are marked
+            int[] markedNeighbours = new int[moralGraph.size()];
             List<String> order = new ArrayList<>();
 
-            for (int i = 0; i < getNodesList().size(); i++) {
-                String label = getLabelWithMaxNumberOfMarkedNeighbours(getInducedGraph(), markedList, unmarkedList);
-                order.add(label);
-                unmarkedList.remove(label);
-                markedList.add(label);
+            for (int i = 0; i < moralGraph.size(); i++) {
+                int vertex = getVertexWithMaxNumberOfMarkedNeighbours(marked, markedNeighbours, i == 0, random);
+                order.add(moralGraph.getLabel(vertex));
+                marked[vertex] = true;
+                for (int neighbour : moralGraph.getNeighbours(vertex)) {
+                    markedNeighbours[neighbour]++;
+                }
             }
             // reverse order and then remove query node
             Collections.reverse(order);
-            order.remove(queryNode.getLabel());
+            order.remove(moralGraph.getLabel(queryIndex));
             return new LinkedHashSet<>(order);
         }
         return Set.of();
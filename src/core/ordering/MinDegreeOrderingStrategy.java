@@ -0,0 +1,36 @@
+package core.ordering;
+
+import core.EliminationGraph;
+
+/**
+ * Minimum Degree Ordering Class.
+ * This class is used to automatically generate an order for a bayesian network query by always eliminating
+ * the random variable with the fewest neighbours, which creates the smallest factor.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class MinDegreeOrderingStrategy extends HeapOrderingStrategy {
+    /**
+     * Scores a vertex by its number of neighbours.
+     *
+     * @param graph  elimination graph
+     * @param vertex vertex index
+     * @return number of neighbours
+     */
+    @Override
+    protected long score(EliminationGraph graph, int vertex) {
+        return graph.getDegree(vertex);
+    }
+
+    /**
+     * The degree of a vertex only changes when one of its neighbours is eliminated or connected to it.
+     *
+     * @return True
+     */
+    @Override
+    protected boolean isScoreLocal() {
+        return true;
+    }
+}
@@ -0,0 +1,26 @@
+package core.ordering;
+
+import core.EliminationGraph;
+
+/**
+ * Minimum Fill Ordering Class.
+ * This class is used to automatically generate an order for a bayesian network query by always eliminating
+ * the random variable that adds the fewest fill-in edges between its neighbours.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class MinFillOrderingStrategy extends HeapOrderingStrategy {
+    /**
+     * Scores a vertex by the number of fill-in edges its elimination adds.
+     *
+     * @param graph  elimination graph
+     * @param vertex vertex index
+     * @return number of fill-in edges
+     */
+    @Override
+    protected long score(EliminationGraph graph, int vertex) {
+        return graph.getFillIn(vertex);
+    }
+}
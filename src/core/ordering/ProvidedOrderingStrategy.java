@@ -37,4 +37,14 @@ public class ProvidedOrderingStrategy extends BasicOrderingStrategy {
     public Set<String> getOrder(QueryInfo queryInfo) {
         return providedOrder;
     }
+
+    /**
+     * Gets a key identifying the ordering strategy, which includes the provided order.
+     *
+     * @return ordering strategy key
+     */
+    @Override
+    public String getCacheKey() {
+        return super.getCacheKey() + providedOrder;
+    }
 }
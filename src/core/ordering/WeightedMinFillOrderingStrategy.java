@@ -0,0 +1,38 @@
+package core.ordering;
+
+import core.EliminationGraph;
+
+/**
+ * Weighted Minimum Fill Ordering Class.
+ * This class is used to automatically generate an order for a bayesian network query by always eliminating
+ * the random variable whose fill-in edges have the lowest total weight, where the weight of an edge is the size of
+ * the table of the clique the elimination creates. Unlike minimum fill, a fill-in edge added to a large clique costs
+ * more than one added to a small clique. Random variables that add no fill-in edges are eliminated first, the one
+ * with the lowest degree first.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class WeightedMinFillOrderingStrategy extends HeapOrderingStrategy {
+
+    /**
+     * Scores a vertex by the weight of the fill-in edges its elimination adds, or by its degree if it adds none.
+     *
+     * @param graph  elimination graph
+     * @param vertex vertex index
+     * @return score of the vertex
+     */
+    @Override
+    protected long score(EliminationGraph graph, int vertex) {
+        int fillIn = graph.getFillIn(vertex);
+        int degree = graph.getDegree(vertex);
+        if (fillIn == 0) {
+            return degree;
+        }
+        // every random variable is binary, so the clique of the vertex and its neighbours has 2^(degree+1) cells.
+        // the bits of a positive double grow with its value and are far larger than any degree
+        double fillWeight = Math.scalb((double) fillIn, degree + 1);
+        return Double.doubleToLongBits(fillWeight);
+    }
+}
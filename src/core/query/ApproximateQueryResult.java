@@ -0,0 +1,85 @@
+package core.query;
+
+/**
+ * Approximate Query Result Class.
+ * This class is used to compile results of a query answered by sampling, with the error of the estimate.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class ApproximateQueryResult extends QueryResult {
+    private static final double Z_95 = 1.959963984540054;
+    private final double standardError;
+    private final long noOfSamples;
+    private final double effectiveSampleSize;
+
+    /**
+     * Constructor specifying the estimate, its standard error and the samples used.
+     *
+     * @param probability         estimated query r.v probability
+     * @param standardError       standard error of the estimate
+     * @param noOfSamples         number of samples drawn
+     * @param effectiveSampleSize number of independent unweighted samples the estimate is worth
+     */
+    public ApproximateQueryResult(double probability, double standardError, long noOfSamples, double effectiveSampleSize) {
+        super(probability, new String[0]);
+        this.standardError = standardError;
+        this.noOfSamples = noOfSamples;
+        this.effectiveSampleSize = effectiveSampleSize;
+    }
+
+    /**
+     * Gets the lower bound of the 95% confidence interval
+     *
+     * @return lower bound
+     */
+    public double getLowerBound() {
+        return Math.max(getProbability() - Z_95 * standardError, 0.0);
+    }
+
+    /**
+     * Gets the upper bound of the 95% confidence interval
+     *
+     * @return upper bound
+     */
+    public double getUpperBound() {
+        return Math.min(getProbability() + Z_95 * standardError, 1.0);
+    }
+
+    /**
+     * Gets the standard error of the estimate
+     *
+     * @return standard error
+     */
+    public double getStandardError() {
+        return standardError;
+    }
+
+    /**
+     * Gets the relative error, the standard error as a fraction of the estimate
+     *
+     * @return relative error, or infinity if the estimate is 0
+     */
+    public double getRelativeError() {
+        return getProbability() > 0 ? standardError / getProbability() : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Gets the number of samples drawn
+     *
+     * @return number of samples
+     */
+    public long getNoOfSamples() {
+        return noOfSamples;
+    }
+
+    /**
+     * Gets the effective sample size
+     *
+     * @return effective sample size
+     */
+    public double getEffectiveSampleSize() {
+        return effectiveSampleSize;
+    }
+}
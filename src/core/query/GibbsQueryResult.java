@@ -0,0 +1,49 @@
+package core.query;
+
+/**
+ * Gibbs Query Result Class.
+ * This class is used to compile results of a query answered by Gibbs sampling, with the convergence of the chains.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class GibbsQueryResult extends ApproximateQueryResult {
+    private final double rHat;
+    private final boolean converged;
+
+    /**
+     * Constructor specifying the estimate, its standard error, the samples used and the convergence.
+     *
+     * @param probability         estimated query r.v probability
+     * @param standardError       standard error of the estimate
+     * @param noOfSamples         number of samples kept over every chain
+     * @param effectiveSampleSize number of independent samples the estimate is worth
+     * @param rHat                potential scale reduction factor of the chains
+     * @param converged           True if the chains converged before the sample limit
+     */
+    public GibbsQueryResult(double probability, double standardError, long noOfSamples, double effectiveSampleSize,
+                            double rHat, boolean converged) {
+        super(probability, standardError, noOfSamples, effectiveSampleSize);
+        this.rHat = rHat;
+        this.converged = converged;
+    }
+
+    /**
+     * Gets the potential scale reduction factor, which approaches 1 as the chains converge
+     *
+     * @return R-hat
+     */
+    public double getRHat() {
+        return rHat;
+    }
+
+    /**
+     * Checks if the chains converged before the sample limit
+     *
+     * @return True if converged
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+}
@@ -0,0 +1,57 @@
+package core.query;
+
+import java.util.Map;
+
+/**
+ * Marginals Result Class.
+ * This class is used to compile the marginals of every random variable computed by an iterative algorithm.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class MarginalsResult {
+    private final Map<String, Double> marginals;
+    private final int noOfIterations;
+    private final boolean converged;
+
+    /**
+     * Constructor specifying the marginals and the convergence of the algorithm.
+     *
+     * @param marginals      probability of every random variable being true, keyed by label
+     * @param noOfIterations number of iterations performed
+     * @param converged      True if the algorithm converged before the iteration limit
+     */
+    public MarginalsResult(Map<String, Double> marginals, int noOfIterations, boolean converged) {
+        this.marginals = marginals;
+        this.noOfIterations = noOfIterations;
+        this.converged = converged;
+    }
+
+    /**
+     * Gets the probability of every random variable being true
+     *
+     * @return marginals keyed by random variable label
+     */
+    public Map<String, Double> getMarginals() {
+        return marginals;
+    }
+
+    /**
+     * Gets the number of iterations performed
+     *
+     * @return number of iterations
+     */
+    public int getNoOfIterations() {
+        return noOfIterations;
+    }
+
+    /**
+     * Checks if the algorithm converged before the iteration limit
+     *
+     * @return True if converged
+     */
+    public boolean isConverged() {
+        return converged;
+    }
+}
@@ -0,0 +1,57 @@
+package core.query;
+
+import java.util.Map;
+
+/**
+ * MPE Result Class.
+ * This class is used to compile results of a most probable explanation or maximum a posteriori query.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class MpeResult {
+    private final Map<String, Boolean> assignment;
+    private final double probability;
+    private final String[] order;
+
+    /**
+     * Constructor specifying the most probable assignment, its probability and the elimination order.
+     *
+     * @param assignment  most probable value of each random variable
+     * @param probability joint probability of the assignment and the evidence
+     * @param order       elimination order
+     */
+    public MpeResult(Map<String, Boolean> assignment, double probability, String[] order) {
+        this.assignment = assignment;
+        this.probability = probability;
+        this.order = order;
+    }
+
+    /**
+     * Gets the most probable value of each random variable
+     *
+     * @return random variable labels and values
+     */
+    public Map<String, Boolean> getAssignment() {
+        return assignment;
+    }
+
+    /**
+     * Gets the joint probability of the most probable assignment and the evidence
+     *
+     * @return joint probability
+     */
+    public double getProbability() {
+        return probability;
+    }
+
+    /**
+     * Gets the elimination order
+     *
+     * @return elimination order
+     */
+    public String[] getOrder() {
+        return order;
+    }
+}
@@ -0,0 +1,125 @@
+package core.query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Query Cache Class.
+ * This class stores the results of recent bayesian network queries, evicting the least recently used result
+ * once the maximum number of entries is reached. Results are only valid for the network version they were
+ * computed with, so the cache is cleared as soon as a different version is seen.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class QueryCache {
+    private final int maxEntries;
+    private final Map<String, QueryResult> results;
+    private long networkVersion = -1;
+    private long hits;
+    private long misses;
+
+    /**
+     * Constructor specifying the maximum number of cached results.
+     *
+     * @param maxEntries maximum number of cached results
+     */
+    public QueryCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        // access ordering keeps the least recently used result first
+        this.results = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QueryResult> eldest) {
+                return size() > QueryCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Gets a cached query result.
+     *
+     * @param key            query key
+     * @param networkVersion current version of the network
+     * @return cached query result or null if the query has not been cached
+     */
+    public synchronized QueryResult get(String key, long networkVersion) {
+        invalidateIfChanged(networkVersion);
+        QueryResult result = results.get(key);
+        if (result == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return result;
+    }
+
+    /**
+     * Caches a query result.
+     *
+     * @param key            query key
+     * @param networkVersion version of the network the result was computed with
+     * @param result         query result
+     */
+    public synchronized void put(String key, long networkVersion, QueryResult result) {
+        invalidateIfChanged(networkVersion);
+        results.put(key, result);
+    }
+
+    /**
+     * Clears the cache if the network has changed since the results were computed.
+     *
+     * @param networkVersion current version of the network
+     */
+    private void invalidateIfChanged(long networkVersion) {
+        if (this.networkVersion != networkVersion) {
+            results.clear();
+            this.networkVersion = networkVersion;
+        }
+    }
+
+    /**
+     * Removes all cached results.
+     */
+    public synchronized void clear() {
+        results.clear();
+    }
+
+    /**
+     * Generates the cache key of a query for an ordering strategy.
+     *
+     * @param queryInfo   query information
+     * @param orderingKey ordering strategy key
+     * @return cache key
+     */
+    public static String createKey(QueryInfo queryInfo, String orderingKey) {
+        return queryInfo.getCanonicalKey() + "#" + orderingKey;
+    }
+
+    /**
+     * Gets the number of cached results.
+     *
+     * @return number of cached results
+     */
+    public synchronized int size() {
+        return results.size();
+    }
+
+    /**
+     * Gets the number of queries answered from the cache.
+     *
+     * @return number of cache hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of queries that were not found in the cache.
+     *
+     * @return number of cache misses
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+}
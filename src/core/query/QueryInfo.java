@@ -4,6 +4,7 @@ import core.BayesianNetwork;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Query Info Class.
@@ -91,6 +92,28 @@ public class QueryInfo {
         return getEvidences().size() != 0;
     }
 
+    /**
+     * Gets a canonical key of the query, made of the random variable, its value and the evidence sorted by label.
+     * Two queries with the same key always have the same answer.
+     *
+     * @return canonical query key
+     */
+    public String getCanonicalKey() {
+        return label.toLowerCase() + "=" + resolveToBooleanString(value) + "|" + getEvidenceKey();
+    }
+
+    /**
+     * Gets a key identifying the evidence of the query, the same for any order of the evidence.
+     *
+     * @return lower case evidence labels and values, sorted
+     */
+    public String getEvidenceKey() {
+        return evidences.stream()
+                .map(evidence -> evidence.getLabel().toLowerCase() + "=" + resolveToBooleanString(evidence.getQueryValue()))
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
     /**
      * Returns the boolean representation of a boolean string
      *
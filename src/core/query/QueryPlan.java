@@ -0,0 +1,185 @@
+package core.query;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Query Plan Class.
+ * This class describes the steps variable elimination would perform for a query, without performing them,
+ * so the cost of a query can be checked before it is run.
+ *
+ * @author 210032207
+ * @version 1.0.0
+ * @since 15/03/2022
+ */
+public class QueryPlan {
+    private final String[] order;
+    private final List<Step> steps;
+    private final int inducedWidth;
+    private final double maxTableCells;
+    private final double multiplyAdds;
+    private final double complexity;
+
+    /**
+     * Constructor specifying the order and the planned steps.
+     *
+     * @param order         query order
+     * @param steps         planned steps, in the order they are performed
+     * @param inducedWidth  largest product scope minus one
+     * @param maxTableCells number of cells of the largest table created
+     * @param multiplyAdds  total number of multiplications and additions
+     * @param complexity    query complexity, as reported by the query result
+     */
+    public QueryPlan(String[] order, List<Step> steps, int inducedWidth, double maxTableCells, double multiplyAdds, double complexity) {
+        this.order = order;
+        this.steps = Collections.unmodifiableList(steps);
+        this.inducedWidth = inducedWidth;
+        this.maxTableCells = maxTableCells;
+        this.multiplyAdds = multiplyAdds;
+        this.complexity = complexity;
+    }
+
+    /**
+     * Gets the query order
+     *
+     * @return query order
+     */
+    public String[] getOrder() {
+        return order;
+    }
+
+    /**
+     * Gets the planned steps, the eliminations followed by the joins of the remaining factors.
+     *
+     * @return planned steps
+     */
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    /**
+     * Gets the induced width, the number of random variables of the largest product minus one.
+     *
+     * @return induced width
+     */
+    public int getInducedWidth() {
+        return inducedWidth;
+    }
+
+    /**
+     * Gets the number of cells of the largest table created.
+     *
+     * @return number of cells
+     */
+    public double getMaxTableCells() {
+        return maxTableCells;
+    }
+
+    /**
+     * Gets the size of the largest table created in bytes.
+     *
+     * @return number of bytes
+     */
+    public double getMaxTableBytes() {
+        return maxTableCells * Double.BYTES;
+    }
+
+    /**
+     * Gets the total number of multiplications and additions.
+     *
+     * @return number of multiply-adds
+     */
+    public double getMultiplyAdds() {
+        return multiplyAdds;
+    }
+
+    /**
+     * Gets the query complexity, the same value the query result reports once the query has run.
+     *
+     * @return query complexity
+     */
+    public double getComplexity() {
+        return complexity;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Step step : steps) {
+            builder.append(step).append(System.lineSeparator());
+        }
+        builder.append("width=").append(inducedWidth)
+                .append(" maxCells=").append((long) maxTableCells)
+                .append(" maxBytes=").append((long) getMaxTableBytes())
+                .append(" multiplyAdds=").append((long) multiplyAdds);
+        return builder.toString();
+    }
+
+    /**
+     * Query Plan Step Class.
+     * A step either sums a random variable out of the factors that include it, or joins two remaining factors.
+     */
+    public static class Step {
+        private final String variable;
+        private final int noOfFactors;
+        private final List<String> productScope;
+        private final List<String> resultScope;
+
+        /**
+         * Constructor specifying the summed out random variable and the scopes.
+         *
+         * @param variable     summed out random variable, or null for a join
+         * @param noOfFactors  number of factors multiplied
+         * @param productScope random variables of the product
+         * @param resultScope  random variables of the created factor
+         */
+        public Step(String variable, int noOfFactors, List<String> productScope, List<String> resultScope) {
+            this.variable = variable;
+            this.noOfFactors = noOfFactors;
+            this.productScope = Collections.unmodifiableList(productScope);
+            this.resultScope = Collections.unmodifiableList(resultScope);
+        }
+
+        /**
+         * Gets the summed out random variable.
+         *
+         * @return random variable label, or null if the step is a join
+         */
+        public String getVariable() {
+            return variable;
+        }
+
+        /**
+         * Gets the number of factors multiplied.
+         *
+         * @return number of factors
+         */
+        public int getNoOfFactors() {
+            return noOfFactors;
+        }
+
+        /**
+         * Gets the random variables of the product.
+         *
+         * @return random variable labels
+         */
+        public List<String> getProductScope() {
+            return productScope;
+        }
+
+        /**
+         * Gets the random variables of the created factor.
+         *
+         * @return random variable labels
+         */
+        public List<String> getResultScope() {
+            return resultScope;
+        }
+
+        @Override
+        public String toString() {
+            String operation = variable == null ? "join" : "sum out [" + variable + "]";
+            return operation + " of " + noOfFactors + " factors over " + productScope + " --> P(" + String.join(",", resultScope) + ")";
+        }
+    }
+}